@@ -0,0 +1,31 @@
+package frc.robot;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.lightningrobotics.common.auto.Path;
+import com.lightningrobotics.common.auto.PathCatalog;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConfig;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Paths generated ahead of time by the generateTrajectories task
+ */
+public class AutoPaths implements PathCatalog {
+
+	// must match the max speed and acceleration in the drivetrain gains
+	private static final double MAX_SPEED = 1d;
+	private static final double MAX_ACCEL = 1d;
+
+	public static final Path HALF_METER = new Path("Test Differential Auton 0.5", Arrays.asList(
+		new Pose2d(0d, 0d, Rotation2d.fromDegrees(0d)),
+		new Pose2d(0.5d, 0d, Rotation2d.fromDegrees(0d))));
+
+	@Override
+	public Map<Path, TrajectoryConfig> getPaths() {
+		return Map.of(HALF_METER, new TrajectoryConfig(MAX_SPEED, MAX_ACCEL));
+	}
+
+}
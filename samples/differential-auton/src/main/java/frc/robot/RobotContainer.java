@@ -1,6 +1,5 @@
 package frc.robot;
 
-import java.util.Arrays;
 
 import com.lightningrobotics.common.LightningContainer;
 import com.lightningrobotics.common.auto.Autonomous;
@@ -14,8 +13,6 @@ import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
-import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Pose2d;
 
 import frc.robot.subsystems.Drivetrain;
 
@@ -50,9 +47,7 @@ public class RobotContainer extends LightningContainer {
 	protected void configureAutonomousCommands() {
 
 		try {
-			Autonomous.register("Test Differential Auton 0.5", 
-			(new Path(Arrays.asList(new Pose2d(0d, 0d, Rotation2d.fromDegrees(0d)), 
-				new Pose2d(0.5d, 0d, Rotation2d.fromDegrees(0d))))).getCommand(drivetrain));
+			Autonomous.register("Test Differential Auton 0.5", AutoPaths.HALF_METER.getCommand(drivetrain));
 		} catch(Exception e) {
 			System.err.println("Unexpected Error: " + e.getMessage());
 		}
@@ -6,7 +6,6 @@ import com.lightningrobotics.common.LightningContainer;
 import com.lightningrobotics.common.auto.Autonomous;
 import com.lightningrobotics.common.auto.Path;
 import com.lightningrobotics.common.command.drivetrain.swerve.SwerveDriveCommand;
-import com.lightningrobotics.common.geometry.LightningOdometer;
 import com.lightningrobotics.common.subsystem.core.LightningIMU;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveDrivetrain;
@@ -23,9 +22,7 @@ public class RobotContainer extends LightningContainer {
 
 	private static final LightningIMU imu = LightningIMU.pigeon(19);
 
-	private static final SwerveDrivetrain drivetrain = new Drivetrain();
-
-	// private static final LightningOdometer lo = new LightningOdometer(drivetrain.getGains().getKinematics(), imu);
+	private static final SwerveDrivetrain drivetrain = new Drivetrain(imu);
 
 	@Override
 	protected void configureButtonBindings() { }
@@ -46,13 +43,13 @@ public class RobotContainer extends LightningContainer {
 
 	@Override
 	protected void configureAutonomousCommands() {
-		// try {
-		// 	Autonomous.register("Test Swerve Auton", 
-		// 	(new Path(Arrays.asList(new Pose2d(0d, 0d, Rotation2d.fromDegrees(0d)), 
-		// 		new Pose2d(1d, 0d, Rotation2d.fromDegrees(0d))))).getCommand(drivetrain, false));
-		// } catch(Exception e) {
-		// 	System.err.println("Unexpected Error: " + e.getMessage());
-		// }
+		try {
+			Autonomous.register("Test Swerve Auton", 
+			(new Path(Arrays.asList(new Pose2d(0d, 0d, Rotation2d.fromDegrees(0d)), 
+				new Pose2d(1d, 0d, Rotation2d.fromDegrees(0d))))).getCommand(drivetrain));
+		} catch(Exception e) {
+			System.err.println("Unexpected Error: " + e.getMessage());
+		}
 	}
 
 	@Override
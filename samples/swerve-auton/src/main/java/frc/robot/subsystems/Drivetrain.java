@@ -7,6 +7,7 @@ import com.ctre.phoenix.sensors.CANCoder;
 import com.ctre.phoenix.sensors.CANCoderConfiguration;
 import com.ctre.phoenix.sensors.SensorInitializationStrategy;
 import com.lightningrobotics.common.controller.PIDFController;
+import com.lightningrobotics.common.subsystem.core.LightningIMU;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveGains;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveModule;
@@ -26,8 +27,8 @@ public class Drivetrain extends SwerveDrivetrain {
         new boolean[]{false, false, false, false}
     );
 
-    public Drivetrain() {
-        super(SWERVE_GAINS, new SwerveModule[]{
+    public Drivetrain(LightningIMU imu) {
+        super(SWERVE_GAINS, imu, new SwerveModule[]{
             makeModule(Modules.FRONT_LEFT, 8, 7, 16, Rotation2d.fromDegrees(-95.09765625)),
             makeModule(Modules.FRONT_RIGHT, 11, 12, 17, Rotation2d.fromDegrees(-12.744140625)),
             makeModule(Modules.REAR_LEFT, 10, 9, 15, Rotation2d.fromDegrees(30.673828125)),
@@ -0,0 +1,86 @@
+package com.lightningrobotics.common.auto.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.lightningrobotics.common.auto.trajectory.FieldPaths;
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/**
+ * Loading the five ball routine as a PathWeaver path and as a PathPlanner
+ * trajectory
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathFilesBenchmark {
+
+    private static final double FIELD_HEIGHT = 8.229;
+
+    private File pathWeaver;
+    private File pathPlanner;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Pose2d> waypoints = FieldPaths.waypoints("FIVE_BALL");
+
+        pathWeaver = File.createTempFile("FiveBall", ".path");
+        try (var out = new PrintWriter(pathWeaver, "US-ASCII")) {
+            out.println("X,Y,Tangent X,Tangent Y,Fixed Theta,Reversed,Name");
+            for (var pose : waypoints) {
+                out.printf(Locale.ROOT, "%.4f,%.4f,%.4f,%.4f,true,false,%n", pose.getX(), pose.getY() - FIELD_HEIGHT,
+                        pose.getRotation().getCos() * 2, pose.getRotation().getSin() * 2);
+            }
+        }
+
+        Trajectory trajectory = Trajectory.from(waypoints, FieldPaths.config("MIXED"));
+        pathPlanner = File.createTempFile("FiveBall", ".json");
+        try (var out = new PrintWriter(pathPlanner, "US-ASCII")) {
+            out.print('[');
+            var states = trajectory.getStates();
+            for (int i = 0; i < states.size(); ++i) {
+                var state = states.get(i);
+                out.printf(Locale.ROOT, "%s{\"time\":%s,\"velocity\":%s,\"acceleration\":%s,\"pose\":{"
+                        + "\"translation\":{\"x\":%s,\"y\":%s},\"rotation\":{\"radians\":%s}},\"curvature\":%s}",
+                        i == 0 ? "" : ",", state.timeSeconds, state.velocityMetersPerSecond,
+                        state.accelerationMetersPerSecondSq, state.poseMeters.getX(), state.poseMeters.getY(),
+                        state.poseMeters.getRotation().getRadians(), state.curvatureRadPerMeter);
+            }
+            out.print(']');
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        pathWeaver.delete();
+        //noinspection ResultOfMethodCallIgnored
+        pathPlanner.delete();
+    }
+
+    @Benchmark
+    public List<Pose2d> readPathWeaver() throws IOException {
+        return PathFiles.readPathWeaver(pathWeaver);
+    }
+
+    @Benchmark
+    public Trajectory readPathPlanner() throws IOException {
+        return PathFiles.readPathPlanner(pathPlanner);
+    }
+
+}
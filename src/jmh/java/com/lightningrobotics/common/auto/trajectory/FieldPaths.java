@@ -0,0 +1,307 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Waypoints and constraint sets shaped like real autonomous routines on a
+ * 2022 field, shared by the benchmarks
+ */
+public final class FieldPaths {
+
+    public static final double MAX_VELOCITY = 3.0;
+    public static final double MAX_ACCELERATION = 2.0;
+
+    private FieldPaths() { }
+
+    /**
+     * Paths by the name used in benchmark parameters:
+     * SHORT drives off the tarmac, S_CURVE weaves through five segments and
+     * FIVE_BALL is a full field five ball routine
+     * @param name the path name
+     * @return the waypoints, in field coordinates
+     */
+    public static List<Pose2d> waypoints(String name) {
+        switch (name) {
+            case "SHORT":
+                return List.of(
+                        pose(7.60, 1.85, -90),
+                        pose(7.60, 0.65, -90));
+            case "S_CURVE":
+                return List.of(
+                        pose(1.00, 1.00, 0),
+                        pose(2.50, 2.00, 45),
+                        pose(4.00, 3.00, 0),
+                        pose(5.50, 2.00, -45),
+                        pose(7.00, 1.00, 0),
+                        pose(8.50, 2.00, 45));
+            case "FIVE_BALL":
+                return List.of(
+                        pose(7.60, 1.85, -90),
+                        pose(7.60, 0.65, -90),
+                        pose(6.60, 1.20, 150),
+                        pose(5.20, 1.95, 160),
+                        pose(3.00, 2.60, -150),
+                        pose(1.45, 1.35, -135),
+                        pose(1.70, 0.70, -15),
+                        pose(3.50, 1.60, 40),
+                        pose(5.80, 3.10, 20),
+                        pose(6.90, 3.30, 0));
+            default:
+                throw new IllegalArgumentException("no path named " + name);
+        }
+    }
+
+    /**
+     * Constraint sets by the name used in benchmark parameters: NONE, or
+     * MIXED with twelve constraints, some pure functions of the path and
+     * some depending on the velocity
+     * @param name the constraint set name
+     * @return the constraints
+     */
+    public static List<TrajectoryConstraint> constraints(String name) {
+        var constraints = new ArrayList<TrajectoryConstraint>();
+        switch (name) {
+            case "NONE":
+                break;
+            case "MIXED":
+                constraints.add(new CentripetalAcceleration(2.5));
+                constraints.add(new WheelSpeed(0.6, 3.2));
+                constraints.add(new Voltage(2.2, 0.35, 10.0));
+                // slow down around the hub and in front of each cargo
+                constraints.add(new Region(7.00, 3.20, 9.50, 5.00, 1.5));
+                constraints.add(new Region(7.20, 0.20, 8.00, 1.00, 1.2));
+                constraints.add(new Region(4.80, 1.60, 5.60, 2.40, 1.2));
+                constraints.add(new Region(1.00, 0.90, 1.80, 1.70, 1.0));
+                constraints.add(new Region(2.60, 2.20, 3.40, 3.00, 1.2));
+                constraints.add(new Region(0.00, 0.00, 16.46, 0.40, 1.8));
+                constraints.add(new Region(0.00, 7.83, 16.46, 8.23, 1.8));
+                constraints.add(new Region(0.00, 0.00, 0.40, 8.23, 1.8));
+                constraints.add(new Region(16.06, 0.00, 16.46, 8.23, 1.8));
+                break;
+            default:
+                throw new IllegalArgumentException("no constraint set named " + name);
+        }
+        return constraints;
+    }
+
+    public static TrajectoryConfig config(String constraints) {
+        return config(constraints, "COMPILED");
+    }
+
+    /**
+     * A config by constraint set name and by compilation: COMPILED leaves
+     * the constraints as they are, UNCOMPILED hides their purity so every
+     * limit is evaluated on every pass
+     * @param constraints the constraint set name
+     * @param compilation COMPILED or UNCOMPILED
+     * @return the config
+     */
+    public static TrajectoryConfig config(String constraints, String compilation) {
+        var list = constraints(constraints);
+        switch (compilation) {
+            case "COMPILED":
+                break;
+            case "UNCOMPILED":
+                list.replaceAll(Uncompiled::new);
+                break;
+            default:
+                throw new IllegalArgumentException("no compilation named " + compilation);
+        }
+        return new TrajectoryConfig(MAX_VELOCITY, MAX_ACCELERATION).addConstraints(list);
+    }
+
+    private static Pose2d pose(double x, double y, double degrees) {
+        return new Pose2d(x, y, Rotation2d.fromDegrees(degrees));
+    }
+
+    /**
+     * Limits the acceleration towards the center of a turn
+     */
+    static class CentripetalAcceleration implements TrajectoryConstraint {
+        private final double maxCentripetalAcceleration;
+
+        CentripetalAcceleration(double maxCentripetalAcceleration) {
+            this.maxCentripetalAcceleration = maxCentripetalAcceleration;
+        }
+
+        @Override
+        public double getMaxVelocityMetersPerSecond(Pose2d pose, double curvature, double velocity) {
+            return Math.sqrt(maxCentripetalAcceleration / Math.abs(curvature));
+        }
+
+        @Override
+        public AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature,
+                double velocity) {
+            return new AccelerationLimit();
+        }
+
+        @Override
+        public boolean isMaxVelocityPure() {
+            return true;
+        }
+
+        @Override
+        public boolean isAccelerationLimitPure() {
+            return true;
+        }
+    }
+
+    /**
+     * Keeps the outside wheel of a differential drive under its top speed
+     */
+    static class WheelSpeed implements TrajectoryConstraint {
+        private final double trackWidth;
+        private final double maxWheelSpeed;
+
+        WheelSpeed(double trackWidth, double maxWheelSpeed) {
+            this.trackWidth = trackWidth;
+            this.maxWheelSpeed = maxWheelSpeed;
+        }
+
+        @Override
+        public double getMaxVelocityMetersPerSecond(Pose2d pose, double curvature, double velocity) {
+            return maxWheelSpeed / (1 + Math.abs(curvature) * trackWidth / 2);
+        }
+
+        @Override
+        public AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature,
+                double velocity) {
+            return new AccelerationLimit();
+        }
+
+        @Override
+        public boolean isMaxVelocityPure() {
+            return true;
+        }
+
+        @Override
+        public boolean isAccelerationLimitPure() {
+            return true;
+        }
+    }
+
+    /**
+     * Limits the acceleration to what the motors can give at a voltage, which
+     * falls off with the velocity
+     */
+    static class Voltage implements TrajectoryConstraint {
+        private final double kV;
+        private final double kA;
+        private final double maxVoltage;
+
+        Voltage(double kV, double kA, double maxVoltage) {
+            this.kV = kV;
+            this.kA = kA;
+            this.maxVoltage = maxVoltage;
+        }
+
+        @Override
+        public double getMaxVelocityMetersPerSecond(Pose2d pose, double curvature, double velocity) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature,
+                double velocity) {
+            return new AccelerationLimit((-maxVoltage - kV * velocity) / kA, (maxVoltage - kV * velocity) / kA);
+        }
+
+        @Override
+        public void getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature, double velocity,
+                AccelerationLimit limit) {
+            limit.minAccelerationMetersPerSecondSq = (-maxVoltage - kV * velocity) / kA;
+            limit.maxAccelerationMetersPerSecondSq = (maxVoltage - kV * velocity) / kA;
+        }
+
+        @Override
+        public boolean isMaxVelocityPure() {
+            return true;
+        }
+    }
+
+    /**
+     * Caps the speed inside a rectangle of the field
+     */
+    static class Region implements TrajectoryConstraint {
+        private final Translation2d bottomLeft;
+        private final Translation2d topRight;
+        private final double maxVelocity;
+
+        Region(double left, double bottom, double right, double top, double maxVelocity) {
+            this.bottomLeft = new Translation2d(left, bottom);
+            this.topRight = new Translation2d(right, top);
+            this.maxVelocity = maxVelocity;
+        }
+
+        @Override
+        public double getMaxVelocityMetersPerSecond(Pose2d pose, double curvature, double velocity) {
+            double x = pose.getX();
+            double y = pose.getY();
+            if (x >= bottomLeft.getX() && x <= topRight.getX() && y >= bottomLeft.getY() && y <= topRight.getY()) {
+                return maxVelocity;
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature,
+                double velocity) {
+            return new AccelerationLimit();
+        }
+
+        @Override
+        public boolean isMaxVelocityPure() {
+            return true;
+        }
+
+        @Override
+        public boolean isAccelerationLimitPure() {
+            return true;
+        }
+    }
+
+    /**
+     * Passes through to another constraint but never claims to be pure, so
+     * the compiler cannot precompute it
+     */
+    static class Uncompiled implements TrajectoryConstraint {
+        private final TrajectoryConstraint constraint;
+
+        Uncompiled(TrajectoryConstraint constraint) {
+            this.constraint = constraint;
+        }
+
+        @Override
+        public double getMaxVelocityMetersPerSecond(Pose2d pose, double curvature, double velocity) {
+            return constraint.getMaxVelocityMetersPerSecond(pose, curvature, velocity);
+        }
+
+        @Override
+        public AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature,
+                double velocity) {
+            return constraint.getMinMaxAccelerationMetersPerSecondSq(pose, curvature, velocity);
+        }
+
+        @Override
+        public void getMinMaxAccelerationMetersPerSecondSq(Pose2d pose, double curvature, double velocity,
+                AccelerationLimit limit) {
+            constraint.getMinMaxAccelerationMetersPerSecondSq(pose, curvature, velocity, limit);
+        }
+
+        @Override
+        public boolean isMaxVelocityPure() {
+            return false;
+        }
+
+        @Override
+        public boolean isAccelerationLimitPure() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.spline.PoseWithCurvature;
+import edu.wpi.first.math.spline.SplineHelper;
+import edu.wpi.first.math.spline.SplineParameterizer;
+
+/**
+ * Generating trajectories from waypoints, as a whole and just the time
+ * parameterization, with the constraints compiled and without
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrajectoryGenerationBenchmark {
+
+    @Param({ "SHORT", "S_CURVE", "FIVE_BALL" })
+    public String path;
+
+    @Param({ "NONE", "MIXED" })
+    public String constraints;
+
+    @Param({ "COMPILED", "UNCOMPILED" })
+    public String compilation;
+
+    private List<Pose2d> waypoints;
+    private TrajectoryConfig config;
+    private List<PoseWithCurvature> points;
+
+    @Setup
+    public void setup() {
+        waypoints = FieldPaths.waypoints(path);
+        config = FieldPaths.config(constraints, compilation);
+
+        // the spline points Trajectory.from would hand to the interpolater
+        var splines = SplineHelper.getQuinticSplinesFromWaypoints(waypoints);
+        points = new ArrayList<>();
+        points.add(splines[0].getPoint(0.0));
+        for (var spline : splines) {
+            var segment = SplineParameterizer.parameterize(spline);
+            points.addAll(segment.subList(1, segment.size()));
+        }
+    }
+
+    @Benchmark
+    public Trajectory from() {
+        return Trajectory.from(waypoints, config);
+    }
+
+    @Benchmark
+    public Trajectory timeParameterize() {
+        return TrajectoryInterpolater.timeParameterizeTrajectory(points, config.getConstraints(),
+                config.getStartVelocity(), config.getEndVelocity(), config.getMaxVelocity(),
+                config.getMaxAcceleration(), config.isReversed());
+    }
+
+}
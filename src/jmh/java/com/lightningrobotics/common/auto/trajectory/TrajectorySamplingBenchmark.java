@@ -0,0 +1,90 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Sampling a generated trajectory the way a follower does, every 20ms from
+ * the start, and at random times
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrajectorySamplingBenchmark {
+
+    private static final double PERIOD = 0.02;
+    private static final int RANDOM_TIMES = 1024;
+
+    @Param({ "SHORT", "FIVE_BALL" })
+    public String path;
+
+    private Trajectory trajectory;
+    private List<TrajectoryState> states;
+    private PackedTrajectory.Sampler sampler;
+    private final PackedTrajectory.State sample = new PackedTrajectory.State();
+
+    private final double[] randomTimes = new double[RANDOM_TIMES];
+    private int next;
+    private double time;
+
+    @Setup
+    public void setup() {
+        trajectory = Trajectory.from(FieldPaths.waypoints(path), FieldPaths.config("MIXED"));
+        states = trajectory.getStates();
+        sampler = trajectory.pack().sampler();
+
+        var random = new Random(862);
+        for (int i = 0; i < RANDOM_TIMES; ++i) {
+            randomTimes[i] = random.nextDouble() * trajectory.getTotalTimeSeconds();
+        }
+    }
+
+    // the next time a follower would sample at, starting over at the end
+    private double step() {
+        time += PERIOD;
+        if (time > trajectory.getTotalTimeSeconds()) {
+            time = 0;
+            sampler.reset();
+        }
+        return time;
+    }
+
+    @Benchmark
+    public TrajectoryState sample() {
+        return trajectory.sample(step());
+    }
+
+    @Benchmark
+    public TrajectoryState sampleRandom() {
+        next = (next + 1) & (RANDOM_TIMES - 1);
+        return trajectory.sample(randomTimes[next]);
+    }
+
+    @Benchmark
+    public PackedTrajectory.State samplePacked() {
+        return sampler.sample(step(), sample);
+    }
+
+    @Benchmark
+    public PackedTrajectory.State samplePackedRandom() {
+        next = (next + 1) & (RANDOM_TIMES - 1);
+        return sampler.sample(randomTimes[next], sample);
+    }
+
+    @Benchmark
+    public TrajectoryState interpolate() {
+        next = (next + 1) % (states.size() - 1);
+        return states.get(next).interpolate(states.get(next + 1), 0.5);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.lightningrobotics.common.controller;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.controller.LinearPlantInversionFeedforward;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+
+/**
+ * The discrete feedforward for both sides of a differential drive following
+ * a trajectory every 20ms, through {@link FeedForwardController} and through
+ * the plant inversion it used to build on every call
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeedForwardBenchmark {
+
+    private static final double PERIOD = 0.02;
+    private static final double KS = 0.6;
+    private static final double KV = 2.2;
+    private static final double KA = 0.35;
+
+    private final FeedForwardController feedforward = new FeedForwardController(KS, KV, KA);
+
+    private double time;
+
+    // left and right wheel speeds along a gentle weave
+    private double left(double t) {
+        return 2.0 + 0.5 * Math.sin(t);
+    }
+
+    private double right(double t) {
+        return 2.0 - 0.5 * Math.sin(t);
+    }
+
+    @Benchmark
+    public double cached() {
+        double t = time;
+        time += PERIOD;
+        return feedforward.calculate(left(t), left(t + PERIOD), PERIOD)
+                + feedforward.calculate(right(t), right(t + PERIOD), PERIOD);
+    }
+
+    @Benchmark
+    public double plantInversion() {
+        double t = time;
+        time += PERIOD;
+        return plantInversion(left(t), left(t + PERIOD), PERIOD)
+                + plantInversion(right(t), right(t + PERIOD), PERIOD);
+    }
+
+    // what FeedForwardController.calculate(current, next, dt) used to do
+    private static double plantInversion(double currentVelocity, double nextVelocity, double dtSeconds) {
+        var plant = LinearSystemId.identifyVelocitySystem(KV, KA);
+        var feedforward = new LinearPlantInversionFeedforward<>(plant, dtSeconds);
+
+        var r = Matrix.mat(Nat.N1(), Nat.N1()).fill(currentVelocity);
+        var nextR = Matrix.mat(Nat.N1(), Nat.N1()).fill(nextVelocity);
+
+        return KS * Math.signum(currentVelocity) + feedforward.calculate(r, nextR).get(0, 0);
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.lightningrobotics.common.geometry.kinematics.swerve;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
+import com.lightningrobotics.common.util.LightningMath;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Swerve inverse and forward kinematics once per loop, through
+ * {@link SwerveKinematics} writing into reused arrays for three, four and
+ * six module chassis, and through the four module implementation it
+ * replaced
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SwerveKinematicsBenchmark {
+
+    private static final double WIDTH = 0.6;
+    private static final double LENGTH = 0.5;
+    private static final double MAX_SPEED = 4.0;
+    private static final int SPEEDS = 1024;
+
+    private DrivetrainSpeed[] speeds;
+    private final SwerveDrivetrainState[] measured = new SwerveDrivetrainState[SPEEDS];
+    private int next;
+
+    /**
+     * The new kinematics for a chassis with the given number of modules,
+     * evenly spaced around a circle
+     */
+    @State(Scope.Thread)
+    public static class Chassis {
+        @Param({ "3", "4", "6" })
+        public int modules;
+
+        SwerveKinematics kinematics;
+        double[] moduleSpeeds;
+        double[] moduleAngles;
+        final double[] speed = new double[3];
+        // module speeds and angles measured for each of the benchmark's speeds
+        double[][] measuredSpeeds;
+        double[][] measuredAngles;
+
+        @Setup
+        public void setup() {
+            var positions = new Translation2d[modules];
+            for (int i = 0; i < modules; ++i) {
+                double angle = Math.PI / 4 + 2 * Math.PI * i / modules;
+                positions[i] = new Translation2d(0.35 * Math.cos(angle), 0.35 * Math.sin(angle));
+            }
+            kinematics = new SwerveKinematics(MAX_SPEED, positions);
+            moduleSpeeds = new double[modules];
+            moduleAngles = new double[modules];
+
+            measuredSpeeds = new double[SPEEDS][modules];
+            measuredAngles = new double[SPEEDS][modules];
+            var speeds = randomSpeeds();
+            for (int i = 0; i < SPEEDS; ++i) {
+                kinematics.inverse(speeds[i].vx, speeds[i].vy, speeds[i].omega, measuredSpeeds[i], measuredAngles[i]);
+            }
+        }
+    }
+
+    static DrivetrainSpeed[] randomSpeeds() {
+        var random = new Random(862);
+        var speeds = new DrivetrainSpeed[SPEEDS];
+        for (int i = 0; i < SPEEDS; ++i) {
+            speeds[i] = new DrivetrainSpeed(random.nextDouble() * 6 - 3, random.nextDouble() * 6 - 3,
+                    random.nextDouble() * 8 - 4);
+        }
+        return speeds;
+    }
+
+    @Setup
+    public void setup() {
+        speeds = randomSpeeds();
+        for (int i = 0; i < SPEEDS; ++i) {
+            measured[i] = legacyInverse(speeds[i]);
+        }
+    }
+
+    private int step() {
+        next = (next + 1) & (SPEEDS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public SwerveDrivetrainState inverseLegacy() {
+        return legacyInverse(speeds[step()]);
+    }
+
+    @Benchmark
+    public DrivetrainSpeed forwardLegacy() {
+        return legacyForward(measured[step()]);
+    }
+
+    @Benchmark
+    public double[] inverse(Chassis chassis) {
+        var speed = speeds[step()];
+        chassis.kinematics.inverse(speed.vx, speed.vy, speed.omega, chassis.moduleSpeeds, chassis.moduleAngles);
+        return chassis.moduleSpeeds;
+    }
+
+    @Benchmark
+    public double[] forward(Chassis chassis) {
+        int i = step();
+        chassis.kinematics.forward(chassis.measuredSpeeds[i], chassis.measuredAngles[i], chassis.speed);
+        return chassis.speed;
+    }
+
+    // what SwerveKinematics.inverse did before it took module positions
+    static SwerveDrivetrainState legacyInverse(DrivetrainSpeed speed) {
+        final double W = WIDTH;
+        final double L = LENGTH;
+        final double R = Math.sqrt(W * W + L * L);
+
+        var FWD = speed.vx;
+        var STR = speed.vy;
+        var RCW = speed.omega;
+
+        var A = STR - RCW * (L/R);
+        var B = STR + RCW * (L/R);
+        var C = FWD - RCW * (W/R);
+        var D = FWD + RCW * (W/R);
+
+        var FR_Speed = Math.sqrt(B*B + C*C);
+        var FL_Speed = Math.sqrt(B*B + D*D);
+        var RL_Speed = Math.sqrt(A*A + D*D);
+        var RR_Speed = Math.sqrt(A*A + C*C);
+
+        var FR_Angle = Math.atan2(B, C);
+        var FL_Angle = Math.atan2(B, D);
+        var RL_Angle = Math.atan2(A, D);
+        var RR_Angle = Math.atan2(A, C);
+
+        var maxWheelSpeed = LightningMath.max(FR_Speed, FL_Speed, RL_Speed, RR_Speed);
+
+        if(maxWheelSpeed > MAX_SPEED) {
+            FR_Speed = (FR_Speed / maxWheelSpeed) * MAX_SPEED;
+            FL_Speed = (FL_Speed / maxWheelSpeed) * MAX_SPEED;
+            RL_Speed = (RL_Speed / maxWheelSpeed) * MAX_SPEED;
+            RR_Speed = (RR_Speed / maxWheelSpeed) * MAX_SPEED;
+        }
+
+        return new SwerveDrivetrainState(new SwerveModuleState[]{
+            new SwerveModuleState(FL_Speed, new Rotation2d(FL_Angle)),
+            new SwerveModuleState(FR_Speed, new Rotation2d(FR_Angle)),
+            new SwerveModuleState(RL_Speed, new Rotation2d(RL_Angle)),
+            new SwerveModuleState(RR_Speed, new Rotation2d(RR_Angle))
+        });
+    }
+
+    // what SwerveKinematics.forward did before it took module positions
+    static DrivetrainSpeed legacyForward(SwerveDrivetrainState state) {
+        final double W = WIDTH;
+        final double L = LENGTH;
+        final double R = Math.sqrt(W * W + L * L);
+        var states = state.getStates();
+
+        var FL = states[0];
+        var FR = states[1];
+        var RL = states[2];
+        var RR = states[3];
+
+        var BFL = FL.angle.getSin() * FL.velocity;
+        var DFL = FL.angle.getCos() * FL.velocity;
+
+        var BFR = FR.angle.getSin() * FR.velocity;
+        var CFR = FR.angle.getCos() * FR.velocity;
+
+        var ARL = RL.angle.getSin() * RL.velocity;
+        var DRL = RL.angle.getCos() * RL.velocity;
+
+        var ARR = RR.angle.getSin() * RR.velocity;
+        var CRL = RR.angle.getCos() * RR.velocity;
+
+        var A = (ARR + ARL) / 2d;
+        var B = (BFL + BFR) / 2d;
+        var C = (CFR + CRL) / 2d;
+        var D = (DFL + DRL) / 2d;
+
+        var ROT = ((B - A) * (L / R) + (D - C) * (W / R)) / 2d;
+        var FWD = (C + D) / 2d;
+        var STR = (A + B) / 2d;
+
+        return new DrivetrainSpeed(FWD, STR, ROT);
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One thread logging lines while another drains them, through a
+ * {@link LogChannel} and through the ArrayBlockingQueue and Vector drain the
+ * loggers used before it. Lines that do not fit are dropped in both, as the
+ * loggers do. Both threads run flat out, {@link LogChannelPacedBenchmark}
+ * runs them at the robot's rates.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogChannelBenchmark {
+
+    private static final int DEPTH = 1000;
+    private static final double VALUE = 12.345678;
+
+    private final LogChannel<StringBuilder> channel = new LogChannel<>(DEPTH, () -> new StringBuilder(256));
+    private final StringBuilder read = new StringBuilder(256);
+
+    private final ArrayBlockingQueue<String> queue = new ArrayBlockingQueue<>(DEPTH);
+    private final Vector<String> drain = new Vector<>(DEPTH);
+
+    private double timestamp;
+
+    @Benchmark
+    @Group("channel")
+    @GroupThreads(1)
+    public boolean channelLog() {
+        StringBuilder line = channel.claim();
+        if (line == null) {
+            return false;
+        }
+        line.setLength(0);
+        line.append(timestamp += 0.02).append(',').append(VALUE).append(',').append(VALUE);
+        channel.publish();
+        return true;
+    }
+
+    @Benchmark
+    @Group("channel")
+    @GroupThreads(1)
+    public int channelDrain() {
+        int drained = 0;
+        StringBuilder line;
+        while ((line = channel.peek()) != null) {
+            read.setLength(0);
+            read.append(line);
+            channel.release();
+            drained++;
+        }
+        return drained;
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public boolean queueLog() {
+        var line = new StringBuilder().append(timestamp += 0.02).append(',').append(VALUE).append(',').append(VALUE);
+        return queue.offer(line.toString());
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public int queueDrain() {
+        drain.clear();
+        queue.drainTo(drain);
+        int drained = 0;
+        for (String line : drain) {
+            read.setLength(0);
+            read.append(line);
+            drained++;
+        }
+        return drained;
+    }
+
+}
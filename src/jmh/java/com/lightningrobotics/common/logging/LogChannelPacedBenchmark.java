@@ -0,0 +1,158 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link LogChannelBenchmark} at the rates the loggers really see. One
+ * thread logs a line at a fixed rate, like the robot loop, while another
+ * drains every 20ms, like the {@link LogWriter} thread. The waiting happens
+ * between measured calls, so the score is the time a single publish or
+ * drain takes. The lines that did not fit are reported as drops.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogChannelPacedBenchmark {
+
+    private static final int DEPTH = 1000;
+    private static final double VALUE = 12.345678;
+    private static final long POLL_PERIOD = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final LogChannel<StringBuilder> channel = new LogChannel<>(DEPTH, () -> new StringBuilder(256));
+    private final StringBuilder read = new StringBuilder(256);
+
+    private final ArrayBlockingQueue<String> queue = new ArrayBlockingQueue<>(DEPTH);
+    private final Vector<String> drain = new Vector<>(DEPTH);
+
+    private double timestamp;
+
+    /**
+     * Holds the producer to its rate
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        @Param({ "50", "1000" })
+        public int rate;
+
+        private long period;
+        private long next;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            period = TimeUnit.SECONDS.toNanos(1) / rate;
+            next = System.nanoTime();
+        }
+
+        @Setup(Level.Invocation)
+        public void waitForNext() {
+            next += period;
+            long now;
+            while ((now = System.nanoTime()) < next) {
+                Thread.onSpinWait();
+            }
+            // a late loop does not make the next ones come sooner
+            if (now - next > period) {
+                next = now;
+            }
+        }
+    }
+
+    /**
+     * Holds the consumer to the writer thread's poll period
+     */
+    @State(Scope.Thread)
+    public static class Consumer {
+        @Setup(Level.Invocation)
+        public void waitForNext() {
+            LockSupport.parkNanos(POLL_PERIOD);
+        }
+    }
+
+    /**
+     * Lines dropped because the channel or queue was full, per iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Drops {
+        public long drops;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            drops = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("channel")
+    @GroupThreads(1)
+    public boolean channelLog(Producer producer, Drops drops) {
+        StringBuilder line = channel.claim();
+        if (line == null) {
+            drops.drops++;
+            return false;
+        }
+        line.setLength(0);
+        line.append(timestamp += 0.02).append(',').append(VALUE).append(',').append(VALUE);
+        channel.publish();
+        return true;
+    }
+
+    @Benchmark
+    @Group("channel")
+    @GroupThreads(1)
+    public int channelDrain(Consumer consumer) {
+        int drained = 0;
+        StringBuilder line;
+        while ((line = channel.peek()) != null) {
+            read.setLength(0);
+            read.append(line);
+            channel.release();
+            drained++;
+        }
+        return drained;
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public boolean queueLog(Producer producer, Drops drops) {
+        var line = new StringBuilder().append(timestamp += 0.02).append(',').append(VALUE).append(',').append(VALUE);
+        if (!queue.offer(line.toString())) {
+            drops.drops++;
+            return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public int queueDrain(Consumer consumer) {
+        drain.clear();
+        queue.drainTo(drain);
+        int drained = 0;
+        for (String line : drain) {
+            read.setLength(0);
+            read.append(line);
+            drained++;
+        }
+        return drained;
+    }
+
+}
@@ -7,12 +7,18 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
 import com.lightningrobotics.common.auto.Autonomous;
+import com.lightningrobotics.common.auto.TrajectoryPrewarmer;
+import com.lightningrobotics.common.auto.loader.PathFiles;
 import com.lightningrobotics.common.fault.FaultCode;
 import com.lightningrobotics.common.fault.FaultMonitor;
 import com.lightningrobotics.common.fault.LightningFaultCodes;
 import com.lightningrobotics.common.fault.TimedFaultMonitor;
+import com.lightningrobotics.common.logging.ControllerTelemetry;
 import com.lightningrobotics.common.logging.DataLogger;
+import com.lightningrobotics.common.logging.LogRetention;
+import com.lightningrobotics.common.logging.LoopProfiler;
 import com.lightningrobotics.common.testing.SystemTestCommand;
+import com.lightningrobotics.common.util.TaskScheduler;
 
 import java.io.IOException;
 import java.util.Properties;
@@ -20,6 +26,7 @@ import java.util.Properties;
 /**
  * Base robot class, provides
  * {@link com.lightningrobotics.common.logging.DataLogger logging},
+ * {@link com.lightningrobotics.common.logging.LoopProfiler loop profiling},
  * {@link com.lightningrobotics.common.fault.FaultMonitor fault monitoring}, and loops with varying
  * periods {@link LightningRobot#robotBackgroundPeriodic() background},
  * {@link LightningRobot#robotLowPriorityPeriodic() low}, and
@@ -37,20 +44,37 @@ public class LightningRobot extends TimedRobot {
 
     public DataLogger dataLogger = DataLogger.getLogger();
 
-    private int counter = 0;
-
-    private int medPriorityFreq = (int) Math.round(0.1 / getPeriod());
+    private double frameStart;
 
     private double loopTime;
 
-    private int lowPriorityFreq = (int) Math.round(1 / getPeriod());
-
-    private int backgroundPriorityFreq = (int) Math.round(10 / getPeriod());
+    private final TaskScheduler tasks;
 
     private Command autonomousCommand;
 
+    private final LoopProfiler.Phase loopProfile = LoopProfiler.phase("Loop");
+    private final LoopProfiler.Phase faultProfile = LoopProfiler.phase("Fault Monitors");
+    private final LoopProfiler.Phase loggerProfile = LoopProfiler.phase("Data Logger");
+    private final LoopProfiler.Phase schedulerProfile = LoopProfiler.phase("Scheduler");
+
     public LightningRobot(LightningContainer container) {
+        this(container, null);
+    }
+
+    /**
+     * @param container the robot container
+     * @param tasks scheduler to run the lower priority loops on, or null for the default
+     */
+    public LightningRobot(LightningContainer container, TaskScheduler tasks) {
         this.container = container;
+        this.tasks = tasks != null ? tasks : new TaskScheduler(getPeriod());
+
+        this.tasks.schedule("Medium Priority", 0.1, 0.0005, this::robotMediumPriorityPeriodic);
+        this.tasks.schedule("Low Priority", 1.0, 0.0005, this::robotLowPriorityPeriodic);
+        this.tasks.schedule("Background", 10.0, 0.001, this::robotBackgroundPeriodic);
+        this.tasks.schedule("Profiler", 1.0, 0.0005, LoopProfiler::publish);
+        // rate limited to ControllerTelemetry.getPeriod()
+        this.tasks.schedule("Controller Telemetry", 0.02, 0.0005, true, ControllerTelemetry::publish);
     }
 
     /**
@@ -61,6 +85,16 @@ public class LightningRobot extends TimedRobot {
         return container;
     }
 
+    /**
+     * Getter for the scheduler running the lower priority loops. Register
+     * other periodic work with it rather than running it from
+     * robotPeriodic.
+     * @return the {@link com.lightningrobotics.common.util.TaskScheduler} for the robot.
+     */
+    public TaskScheduler getTaskScheduler() {
+        return tasks;
+    }
+
     /**
      * Nothing should happen here.
      */
@@ -103,6 +137,9 @@ public class LightningRobot extends TimedRobot {
         // By this point all datalog fields should be registered
         DataLogger.preventNewDataElements();
 
+        // Compress and prune old logs in the background
+        LogRetention.start();
+
         // Also by this point, all fault codes should be registered, so we can throw them up on the dashboard
         FaultCode.init();
 
@@ -113,6 +150,12 @@ public class LightningRobot extends TimedRobot {
         // Load our autonomous chooser to the dashboard
         Autonomous.load();
 
+        // Paths are loaded while the container is built, report how long they took
+        PathFiles.publishLoadTimes();
+
+        // Generate the autonomous trajectories while we wait to be enabled
+        TrajectoryPrewarmer.getInstance().start();
+
     }
 
     /**
@@ -129,34 +172,44 @@ public class LightningRobot extends TimedRobot {
      */
     @Override
     public void robotPeriodic() {
+        loopProfile.start();
         double time = Timer.getFPGATimestamp();
         if (time > SETTLE_TIME) {
-            counter += 1;
-            if (counter % medPriorityFreq == 0) {
-                robotMediumPriorityPeriodic();
-            }
-            if (counter % lowPriorityFreq == 0) {
-                robotLowPriorityPeriodic();
-            }
-            if (counter % backgroundPriorityFreq == 0) {
-                robotBackgroundPeriodic();
-            }
-
+            faultProfile.start();
             FaultMonitor.checkMonitors();
+            faultProfile.stop();
+
+            loggerProfile.start();
             DataLogger.logData();
-            loopTime = Timer.getFPGATimestamp() - time;
+            loggerProfile.stop();
         }
 
+        // subsystem periodic() calls happen in here
+        schedulerProfile.start();
         CommandScheduler.getInstance().run();
+        schedulerProfile.stop();
+
+        // lower priority loops get whatever is left of the frame
+        if (time > SETTLE_TIME) {
+            tasks.run(frameStart);
+            loopTime = Timer.getFPGATimestamp() - frameStart;
+        }
+        loopProfile.stop();
+    }
+
+    @Override
+    protected void loopFunc() {
+        frameStart = Timer.getFPGATimestamp();
+        super.loopFunc();
     }
 
     /**
      * A slower loop, running once every 10 seconds
      *
-     * Note as currently implemented it still needs to
-     * complete in our loop time or it delay higher
-     * priority opterations. If you have a low priority,
-     * long running operation, consider creating a background
+     * Runs on the {@link #getTaskScheduler() task scheduler}, so it is
+     * put off to a later frame when the current one has no time left.
+     * If you have a low priority, long running operation, register it
+     * with the scheduler as thread safe so it can move to the worker
      * thread.
      */
     protected void robotBackgroundPeriodic() {
@@ -167,24 +220,16 @@ public class LightningRobot extends TimedRobot {
     /**
      *  A slow loop, running once a second
      *
-     * Note as currently implemented it still needs to
-     * complete in our loop time or it delay higher
-     * priority opterations. If you have a low priority,
-     * long running operation, consider creating a background
-     * thread.
+     * Runs on the {@link #getTaskScheduler() task scheduler}, so it is
+     * put off to a later frame when the current one has no time left.
      */
-    protected void robotLowPriorityPeriodic() {
-        DataLogger.getLogger().getLogWriter().drain();
-    }
+    protected void robotLowPriorityPeriodic() { /* Do Nothing */ }
 
     /**
      *  A loop, running 10 times a second
      *
-     * Note as currently implemented it still needs to
-     * complete in our loop time or it delay higher
-     * priority opterations. If you have a low priority,
-     * long running operation, consider creating a background
-     * thread.
+     * Runs on the {@link #getTaskScheduler() task scheduler}, so it is
+     * put off to a later frame when the current one has no time left.
      */
     protected void robotMediumPriorityPeriodic() {
         FaultCode.update();
@@ -3,18 +3,21 @@ package com.lightningrobotics.common.auto;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
+import com.lightningrobotics.common.auto.loader.PathFiles;
 import com.lightningrobotics.common.auto.trajectory.*;
 import com.lightningrobotics.common.command.drivetrain.differential.FollowTrajectory;
 import com.lightningrobotics.common.controller.DiffDriveController;
+import com.lightningrobotics.common.controller.HolonomicDriveController;
 import com.lightningrobotics.common.geometry.kinematics.differential.DifferentialDrivetrainState;
 import com.lightningrobotics.common.geometry.kinematics.differential.DifferentialKinematics;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.differential.DifferentialDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveDrivetrain;
+import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveGains;
 
-import edu.wpi.first.math.WPIMathJNI;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.Filesystem;
@@ -23,7 +26,6 @@ import edu.wpi.first.wpilibj2.command.Command;
 import java.io.*;
 import java.lang.Math;
 import java.nio.file.Paths;
-import java.util.Scanner;
 
 /**
  * Object class representing a path a
@@ -32,6 +34,11 @@ import java.util.Scanner;
  */
 public class Path {
 
+    /**
+     * PathPlanner trajectories loaded so far, by file name
+     */
+    private static Map<String, Trajectory> pathPlannerTrajectories;
+
     /**
      * Name of the path
      */
@@ -100,66 +107,27 @@ public class Path {
             File file = Paths.get(Filesystem.getDeployDirectory().getAbsolutePath(), "paths", fname).toFile();
 
             try {
-                double x_prime;
-                double y_prime;
-
-                double max_y = 8.229;
-
-                Scanner in = new Scanner(file);
-                in.useDelimiter(",");
-                in.nextLine(); // Skip first line with "X Y Theta"
-
-                double start_x = in.nextDouble();
-                double start_y = max_y + in.nextDouble();
-                double start_theta_x = in.nextDouble();
-                double start_theta_y = in.nextDouble();
-                double start_theta = Math.toDegrees(Math.atan2(start_theta_y, start_theta_x));
-
-                double rotaional_theta = start_theta;
-
-                in.nextLine();
-                waypoints.add(new Pose2d((start_x - start_x), (start_y - start_y),
-                        Rotation2d.fromDegrees((start_theta - start_theta))));
-
-                while (in.hasNextDouble()) {
-                    double x = in.nextDouble() - start_x;
-                    double y = (max_y + in.nextDouble()) - start_y;
-
-                    x_prime = (x * Math.cos(Math.toRadians(rotaional_theta)))
-                            + (y * Math.sin(Math.toRadians(rotaional_theta)));
-                    y_prime = -(x * Math.sin(Math.toRadians(rotaional_theta)))
-                            + (y * Math.cos(Math.toRadians(rotaional_theta)));
-
-                    if (reversed == true) { // TODO: check if these really need to be sign filpped
-                        y = -y;
-                        x = -x;
-                    }
-
-                    double theta_x = in.nextDouble();
-                    double theta_y = in.nextDouble();
-                    double theta = Math.toDegrees(Math.atan2(theta_y, theta_x)) - start_theta;
-
-                    if (theta < -180) {
-                        theta = theta + 360;
-                    } else if (theta > 180) {
-                        theta = theta - 360;
-                    }
-
-                    waypoints.add(new Pose2d(x_prime, y_prime, Rotation2d.fromDegrees(theta)));
-
-                    in.nextLine();
-                }
-                in.close();
-            } catch (Exception e) {
-                System.err.println("COULD NOT READ PATH");
-                e.printStackTrace();
+                waypoints = PathFiles.readPathWeaver(file);
+            } catch (IOException e) {
+                System.err.println("Unable to read path " + e.getMessage());
             }
         } else if(fname.contains(".json")) {
-            var filePath = Filesystem.getDeployDirectory().getAbsolutePath() + "/pathplanner/generatedJSON/" + fname;
-            try {
-                this.trajectory = fromJson(filePath);
-            } catch (Exception e) {
-                e.printStackTrace();
+            // use the precompiled trajectory if the TrajectoryCompiler made one
+            File compiled = new File(TrajectoryCache.getInstance().getDirectory(), baseName(fname) + TrajectoryCache.EXTENSION);
+            if (compiled.isFile()) {
+                try {
+                    this.trajectory = TrajectoryCache.read(compiled, null);
+                } catch (IOException e) {
+                    System.err.println("Unable to read compiled trajectory " + compiled + ": " + e.getMessage());
+                }
+            }
+
+            if (this.trajectory == null) {
+                try {
+                    this.trajectory = loadPathPlanner(fname);
+                } catch (IOException e) {
+                    System.err.println("Unable to read trajectory " + e.getMessage());
+                }
             }
         }
 
@@ -169,34 +137,31 @@ public class Path {
     }
 
 	/**
-	 * Gets a trajectory from a json file
-	 * @param path The path to the json as a string
-	 * @return The generated trajectory
-	 * @throws Exception The json format is incorrect
+	 * Loads a PathPlanner trajectory. The first one loaded loads every
+	 * trajectory in the directory at once, in parallel.
+	 * @param fname The file name of the trajectory
+	 * @return The trajectory
+	 * @throws IOException The file cannot be read or parsed
 	 */
-    private Trajectory fromJson(String path) throws Exception {
-
-		// Get elements from path json
-        var elements = WPIMathJNI.fromPathweaverJson(path);
-
-        // Make sure that the elements have the correct length.
-        if (elements.length % 7 != 0) {
-            throw new Exception("An error occurred when converting trajectory elements into a trajectory.");
+    private static synchronized Trajectory loadPathPlanner(String fname) throws IOException {
+        File dir = Paths.get(Filesystem.getDeployDirectory().getAbsolutePath(), "pathplanner", "generatedJSON").toFile();
+        if (pathPlannerTrajectories == null) {
+            pathPlannerTrajectories = PathFiles.readPathPlannerDirectory(dir);
         }
-  
-        // Create a list of states from the elements.
-        List<TrajectoryState> states = new ArrayList<>();
-        for (int i = 0; i < elements.length; i += 7) {
-            states.add(
-                new TrajectoryState(
-                    elements[i],
-                    elements[i + 1],
-                    elements[i + 2],
-                    new Pose2d(elements[i + 3], elements[i + 4], new Rotation2d(elements[i + 5])),
-                    elements[i + 6]));
-        }
-        return new Trajectory(states);
 
+        var trajectory = pathPlannerTrajectories.get(fname);
+        return trajectory != null ? trajectory : PathFiles.readPathPlanner(new File(dir, fname));
+    }
+
+	/**
+	 * Strips the directory and extension from a path file name
+	 * @param fname The file name
+	 * @return The name without directory or extension
+	 */
+    public static String baseName(String fname) {
+        String name = new File(fname).getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
     }
 
     /**
@@ -208,6 +173,15 @@ public class Path {
         return name;
     }
 
+    /**
+     * Waypoints of the path
+     * 
+     * @return The waypoints the path passes through, empty for paths loaded as trajectories
+     */
+    public List<Pose2d> getWaypoints() {
+        return waypoints;
+    }
+
     /**
      * Direction path should be followed
      * 
@@ -234,9 +208,22 @@ public class Path {
             return trajectory;
 
         TrajectoryConfig config = new TrajectoryConfig(drivetrain, getReversed(), max_speed, max_accel);
+        return getTrajectory(config);
+    }
+
+    /**
+     * Obtains an optimized trajectory the robot should follow so it hits all the
+     * waypoints, from the {@link TrajectoryCache} if it has been generated before
+     * 
+     * @param config The configuration to generate the trajectory with
+     * @return A trajectory the robot can follow
+     */
+    public synchronized Trajectory getTrajectory(TrajectoryConfig config) {
+        if (trajectory != null)
+            return trajectory;
 
         try {
-            trajectory = Trajectory.from(waypoints, config);
+            trajectory = TrajectoryCache.getInstance().get(waypoints, config);
         } catch (RuntimeException e) {
             System.out.println("ERROR Unable To Generate Trajectory From Path");
             e.printStackTrace();
@@ -247,6 +234,21 @@ public class Path {
         return trajectory;
     }
 
+    /**
+     * Queue the trajectory to be generated in the background by the
+     * {@link TrajectoryPrewarmer} while the robot is disabled
+     * 
+     * @param config The configuration to generate the trajectory with
+     * @return A handle to get the trajectory from once it is needed
+     */
+    public TrajectoryPrewarmer.Pending prewarm(TrajectoryConfig config) {
+        synchronized (this) {
+            if (trajectory != null)
+                return TrajectoryPrewarmer.completed(trajectory);
+        }
+        return TrajectoryPrewarmer.getInstance().submit(this, config);
+    }
+
     /**
      * The duration of time it will take the robot to complete the path
      * 
@@ -275,12 +277,14 @@ public class Path {
      * @throws Exception if given drivetrain is unsupported
      */
     public Command getCommand(LightningDrivetrain drivetrain, double max_speed, double max_accel) throws Exception {
-        trajectory = this.getTrajectory(drivetrain, max_speed, max_accel);
         if (drivetrain instanceof DifferentialDrivetrain) {
             DifferentialDrivetrain differentialDrivetrain = (DifferentialDrivetrain) drivetrain;
             BiConsumer<Double, Double> voltageConsumer = (l, r) -> ((DifferentialDrivetrain) drivetrain).setVoltage(l, r);
 
-            return new FollowTrajectory(trajectory,
+            // generated in the background while disabled, rather than holding up robot startup
+            TrajectoryPrewarmer.Pending pending = prewarm(new TrajectoryConfig(drivetrain, getReversed(), max_speed, max_accel));
+
+            return new FollowTrajectory(pending::get,
                     drivetrain::getPose,
                     new DiffDriveController(),
                     differentialDrivetrain.getFeedForwardController(),
@@ -294,12 +298,32 @@ public class Path {
                 public void initialize() {
                     super.initialize();
                     differentialDrivetrain.resetPose();
-                    differentialDrivetrain.setPose(trajectory.getInitialPose());
+                    differentialDrivetrain.setPose(getTrajectory().getInitialPose());
                 };
             };
 
         } else if (drivetrain instanceof SwerveDrivetrain) {
-            throw new Exception("ERROR: We dont do swerves yet");
+            SwerveDrivetrain swerveDrivetrain = (SwerveDrivetrain) drivetrain;
+            SwerveGains gains = (SwerveGains) drivetrain.getGains();
+            // the heading profile works in radians per second, the kinematics may not
+            double radiansPerOmega = gains.getKinematics().getRadiansPerOmega();
+
+            TrajectoryPrewarmer.Pending pending = prewarm(new TrajectoryConfig(drivetrain, getReversed(), max_speed, max_accel));
+
+            return new com.lightningrobotics.common.command.drivetrain.swerve.FollowTrajectory(pending::get,
+                    trajectory -> HeadingProfile.across(trajectory, gains.getMaxAngularSpeed() * radiansPerOmega,
+                            gains.getMaxAngularAcceleration()),
+                    drivetrain::getPose,
+                    new HolonomicDriveController(),
+                    swerveDrivetrain::setChassisSpeed,
+                    drivetrain) {
+                @Override
+                public void initialize() {
+                    super.initialize();
+                    swerveDrivetrain.setPose(getTrajectory().getInitialPose());
+                };
+            };
+
         } else {
             throw new Exception("ERROR: Unsupported Drivetrain Type.\nA drivetrain like no other!");
         }
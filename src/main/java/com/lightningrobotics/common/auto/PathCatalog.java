@@ -0,0 +1,23 @@
+package com.lightningrobotics.common.auto;
+
+import java.util.Map;
+
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConfig;
+
+/**
+ * The paths a robot drives, for generating their trajectories ahead of time
+ * with {@link PathPregenerator}. Implementations must have a public no
+ * argument constructor and must not touch robot hardware, since they run
+ * off the robot at build time.
+ */
+public interface PathCatalog {
+
+    /**
+     * Each path with the config it will be driven with on the robot. The
+     * config must match the one used on the robot exactly, or the
+     * pre-generated trajectory will not be found.
+     * @return the paths to generate
+     */
+    Map<Path, TrajectoryConfig> getPaths();
+
+}
@@ -0,0 +1,73 @@
+package com.lightningrobotics.common.auto;
+
+import java.io.File;
+import java.util.Map;
+
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryCache;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConfig;
+
+/**
+ * Generates every path in one or more {@link PathCatalog catalogs} into a
+ * {@link TrajectoryCache} directory, so the robot loads them instead of
+ * generating them. Run by the {@code generateTrajectories} Gradle task.
+ *
+ * Usage: {@code PathPregenerator <output dir> <catalog class>...}
+ */
+public class PathPregenerator {
+
+    public static void main(String... args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: PathPregenerator <output dir> <catalog class>...");
+            System.exit(1);
+        }
+
+        var cache = new TrajectoryCache();
+        cache.setDirectory(new File(args[0]));
+        cache.setCapacity(0);
+
+        int failures = 0;
+        for (int i = 1; i < args.length; ++i) {
+            PathCatalog catalog = (PathCatalog) Class.forName(args[i]).getDeclaredConstructor().newInstance();
+            for (Map.Entry<Path, TrajectoryConfig> entry : catalog.getPaths().entrySet()) {
+                if (!generate(cache, entry.getKey(), entry.getValue())) {
+                    failures++;
+                }
+            }
+        }
+
+        System.out.printf("Generated %d, already up to date %d, failed %d%n",
+                cache.getMisses(), cache.getDiskHits(), failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean generate(TrajectoryCache cache, Path path, TrajectoryConfig config) {
+        if (path.getWaypoints().size() < 2) {
+            System.out.println("Skipping " + path.getName() + ", it has no waypoints");
+            return true;
+        }
+
+        // does not change the result, so the cache key is the same either way
+        config.setParallel(true);
+
+        long start = System.nanoTime();
+        Trajectory trajectory;
+        try {
+            trajectory = cache.get(path.getWaypoints(), config);
+        } catch (RuntimeException e) {
+            System.err.println("Unable to generate " + path.getName() + ": " + e.getMessage());
+            return false;
+        }
+        if (trajectory == null) {
+            System.err.println("Unable to generate " + path.getName() + ": malformed spline");
+            return false;
+        }
+
+        System.out.printf("%-30s %6.2fs %8.1fms %s%n", path.getName(), trajectory.getTotalTimeSeconds(),
+                (System.nanoTime() - start) / 1e6, TrajectoryCache.key(path.getWaypoints(), config));
+        return true;
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.lightningrobotics.common.auto;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import com.lightningrobotics.common.auto.loader.PathFiles;
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryCache;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConfig;
+
+/**
+ * Compiles the path files in a deploy directory into trajectory files ahead
+ * of time, so the robot loads them rather than generating or parsing them.
+ * Run by the {@code compileTrajectories} Gradle task.
+ *
+ * PathWeaver paths ({@code paths/*.path}) are generated with the gains from
+ * a properties file and written under their {@link TrajectoryCache} key, so
+ * {@link Path#getCommand} finds them as long as the gains match the
+ * drivetrain's. PathPlanner trajectories ({@code pathplanner/generatedJSON/*.json})
+ * are already generated, and are converted to {@code trajectories/<name>.traj}.
+ *
+ * The gains file sets {@code maxVelocity} and {@code maxAcceleration}, and
+ * optionally {@code startVelocity}, {@code endVelocity} and {@code reversed}.
+ * Any of them can be set for a single path by prefixing the key with the
+ * path's file name, without its extension, e.g. {@code 3BallHanger.reversed=true}.
+ *
+ * Usage: {@code TrajectoryCompiler <deploy dir> <gains file> [report file]}
+ */
+public class TrajectoryCompiler {
+
+    private static class Result {
+        String name;
+        String source;
+        double totalTime;
+        double peakVelocity;
+        int states;
+        double millis;
+        String error;
+    }
+
+    public static void main(String... args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: TrajectoryCompiler <deploy dir> <gains file> [report file]");
+            System.exit(1);
+        }
+
+        File deploy = new File(args[0]);
+        Properties gains = new Properties();
+        try (InputStream in = new FileInputStream(args[1])) {
+            gains.load(in);
+        }
+
+        File output = new File(deploy, "trajectories");
+        var cache = new TrajectoryCache();
+        cache.setDirectory(output);
+        cache.setCapacity(0);
+
+        var results = new ArrayList<Result>();
+        for (File file : list(new File(deploy, "paths"), ".path")) {
+            results.add(compilePath(cache, file, gains));
+        }
+        for (File file : list(new File(deploy, "pathplanner/generatedJSON"), ".json")) {
+            results.add(convertJson(output, file));
+        }
+
+        int failures = report(results, new PrintWriter(System.out, true));
+        if (args.length > 2) {
+            File reportFile = new File(args[2]);
+            //noinspection ResultOfMethodCallIgnored
+            reportFile.getAbsoluteFile().getParentFile().mkdirs();
+            try (var writer = new PrintWriter(reportFile)) {
+                writeCsv(results, writer);
+            }
+        }
+
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static List<File> list(File dir, String extension) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(extension));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static Result compilePath(TrajectoryCache cache, File file, Properties gains) {
+        var result = new Result();
+        result.name = file.getName();
+        long start = System.nanoTime();
+        try {
+            String name = Path.baseName(file.getName());
+            boolean reversed = Boolean.parseBoolean(gain(gains, name, "reversed", "false"));
+
+            var config = new TrajectoryConfig(
+                    Double.parseDouble(gain(gains, name, "maxVelocity", null)),
+                    Double.parseDouble(gain(gains, name, "maxAcceleration", null)));
+            config.setStartVelocity(Double.parseDouble(gain(gains, name, "startVelocity", "0")));
+            config.setEndVelocity(Double.parseDouble(gain(gains, name, "endVelocity", "0")));
+            config.setReversed(reversed);
+            config.setParallel(true);
+
+            var waypoints = PathFiles.readPathWeaver(file);
+            long misses = cache.getMisses();
+            Trajectory trajectory = cache.get(waypoints, config);
+            if (trajectory == null) {
+                throw new IllegalArgumentException("malformed spline");
+            }
+            result.source = cache.getMisses() > misses ? "generated" : "up to date";
+            summarize(result, trajectory);
+        } catch (Exception e) {
+            result.error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        result.millis = (System.nanoTime() - start) / 1e6;
+        return result;
+    }
+
+    private static Result convertJson(File output, File file) {
+        var result = new Result();
+        result.name = file.getName();
+        result.source = "converted";
+        long start = System.nanoTime();
+        try {
+            Trajectory trajectory = PathFiles.readPathPlanner(file);
+            TrajectoryCache.write(new File(output, Path.baseName(file.getName()) + TrajectoryCache.EXTENSION),
+                    null, trajectory);
+            summarize(result, trajectory);
+        } catch (Exception e) {
+            result.error = e.getMessage() != null ? e.getMessage() : e.toString();
+        }
+        result.millis = (System.nanoTime() - start) / 1e6;
+        return result;
+    }
+
+    private static String gain(Properties gains, String path, String key, String fallback) {
+        String value = gains.getProperty(path + "." + key, gains.getProperty(key, fallback));
+        if (value == null) {
+            throw new IllegalArgumentException("no " + key + " in gains file");
+        }
+        return value.trim();
+    }
+
+    private static void summarize(Result result, Trajectory trajectory) {
+        result.totalTime = trajectory.getTotalTimeSeconds();
+        result.states = trajectory.getStates().size();
+        for (var state : trajectory.getStates()) {
+            result.peakVelocity = Math.max(result.peakVelocity, Math.abs(state.velocityMetersPerSecond));
+        }
+    }
+
+    private static int report(List<Result> results, PrintWriter out) {
+        int failures = 0;
+        out.printf("%-30s %-11s %8s %9s %7s %9s%n", "Path", "", "Time", "Peak v", "States", "Took");
+        for (var result : results) {
+            if (result.error != null) {
+                out.printf("%-30s FAILED: %s%n", result.name, result.error);
+                failures++;
+            } else {
+                out.printf("%-30s %-11s %7.2fs %5.2fm/s %7d %7.1fms%n", result.name, result.source,
+                        result.totalTime, result.peakVelocity, result.states, result.millis);
+            }
+        }
+        out.printf("%d paths, %d failed%n", results.size(), failures);
+        return failures;
+    }
+
+    private static void writeCsv(List<Result> results, PrintWriter out) {
+        out.println("path,source,total time (s),peak velocity (m/s),states,generation time (ms),error");
+        for (var result : results) {
+            out.printf("%s,%s,%.4f,%.4f,%d,%.2f,%s%n", result.name, result.error != null ? "failed" : result.source,
+                    result.totalTime, result.peakVelocity, result.states, result.millis,
+                    result.error != null ? result.error.replace(',', ';') : "");
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.lightningrobotics.common.auto;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConfig;
+import com.lightningrobotics.common.logging.CrashTrackingRunnable;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Generates the trajectories of autonomous paths on a background thread
+ * while the robot is disabled, so the first autonomous loop never stalls on
+ * generation. Paths are queued by {@link Path#prewarm} as their commands are
+ * built, and generated once {@link #start()} is called from robotInit.
+ *
+ * Nothing is generated in the background while the robot is enabled. If a
+ * command starts before its trajectory is ready it either waits for the
+ * generation already in progress or generates the trajectory itself.
+ *
+ * Progress is published to the dashboard under {@code Trajectories/}.
+ */
+public class TrajectoryPrewarmer {
+
+    private static final long enabledPollMillis = 100;
+
+    private static TrajectoryPrewarmer instance;
+
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private Thread worker;
+    private int submitted = 0;
+    private int ready = 0;
+
+    /**
+     * A trajectory that is queued, being generated, or ready
+     */
+    public static class Pending {
+        private final Path path;
+        private final TrajectoryConfig config;
+        private final String label;
+        private boolean started = false;
+        private boolean done = false;
+        private Trajectory trajectory;
+        private double generateTime = 0;
+
+        private Pending(Path path, TrajectoryConfig config, String label) {
+            this.path = path;
+            this.config = config;
+            this.label = label;
+        }
+
+        private Pending(Trajectory trajectory) {
+            this(null, null, null);
+            this.started = true;
+            this.done = true;
+            this.trajectory = trajectory;
+        }
+
+        private synchronized boolean claim() {
+            if (started) {
+                return false;
+            }
+            started = true;
+            return true;
+        }
+
+        private void generate() {
+            long start = System.nanoTime();
+            Trajectory result = null;
+            try {
+                result = path.getTrajectory(config);
+            } finally {
+                synchronized (this) {
+                    trajectory = result;
+                    generateTime = (System.nanoTime() - start) / 1e9;
+                    done = true;
+                    notifyAll();
+                }
+                getInstance().finished(this);
+            }
+        }
+
+        /**
+         * Get the trajectory, waiting for it if it is being generated and
+         * generating it on this thread if it has not been started yet
+         * @return the trajectory
+         */
+        public Trajectory get() {
+            if (claim()) {
+                generate();
+            }
+
+            synchronized (this) {
+                boolean interrupted = false;
+                while (!done) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return trajectory;
+            }
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return how long generation took in seconds, 0 until it is done
+         */
+        public synchronized double getGenerateTime() {
+            return generateTime;
+        }
+    }
+
+    public static synchronized TrajectoryPrewarmer getInstance() {
+        if (instance == null) {
+            instance = new TrajectoryPrewarmer();
+        }
+        return instance;
+    }
+
+    /**
+     * Queue a path to be generated in the background
+     * @param path the path
+     * @param config the configuration it will be driven with
+     * @return a handle to get the trajectory from
+     */
+    public Pending submit(Path path, TrajectoryConfig config) {
+        Pending pending;
+        synchronized (this) {
+            submitted++;
+            String label = path.getName().isEmpty() ? "Path " + submitted : path.getName();
+            pending = new Pending(path, config, label);
+        }
+        queue.add(pending);
+        publishProgress();
+        return pending;
+    }
+
+    /**
+     * Wrap a trajectory that is already available
+     * @param trajectory the trajectory
+     * @return a handle that returns it immediately
+     */
+    public static Pending completed(Trajectory trajectory) {
+        return new Pending(trajectory);
+    }
+
+    /**
+     * Start generating queued paths in the background. Safe to call more
+     * than once.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+
+        worker = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                generateLoop();
+            }
+        }, "TrajectoryPrewarmer");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    private void generateLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // leave the CPU to the robot loop while enabled, commands
+                // that need a trajectory generate it themselves
+                if (DriverStation.isEnabled()) {
+                    Thread.sleep(enabledPollMillis);
+                    continue;
+                }
+
+                Pending pending = queue.poll(enabledPollMillis, TimeUnit.MILLISECONDS);
+                if (pending != null && pending.claim()) {
+                    pending.generate();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Unable to pre-generate trajectory");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void finished(Pending pending) {
+        synchronized (this) {
+            ready++;
+        }
+        SmartDashboard.putNumber("Trajectories/" + pending.label + " ms", pending.getGenerateTime() * 1000);
+        publishProgress();
+    }
+
+    private void publishProgress() {
+        int done;
+        int total;
+        synchronized (this) {
+            done = ready;
+            total = submitted;
+        }
+        SmartDashboard.putNumber("Trajectories/Ready", done);
+        SmartDashboard.putNumber("Trajectories/Total", total);
+        SmartDashboard.putBoolean("Trajectories/All Ready", done == total);
+    }
+
+    /**
+     * @return true once every submitted path has been generated
+     */
+    public synchronized boolean isAllReady() {
+        return ready == submitted;
+    }
+
+}
@@ -0,0 +1,288 @@
+package com.lightningrobotics.common.auto.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the tokens of a text path file from a memory mapped buffer, keeping
+ * track of the line and column for errors
+ */
+class PathFileReader {
+
+    // doubles up to 10^22 are exact, so one multiply or divide by them rounds correctly
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // longest mantissa that is always exact as a double
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final File file;
+    private final ByteBuffer buf;
+    private int line = 1;
+    private int lineStart = 0;
+
+    private PathFileReader(File file, ByteBuffer buf) {
+        this.file = file;
+        this.buf = buf;
+    }
+
+    static PathFileReader open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new PathFileReader(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    boolean atEnd() {
+        return !buf.hasRemaining();
+    }
+
+    /**
+     * @return the next byte without consuming it, or -1 at the end
+     */
+    int peek() {
+        return buf.hasRemaining() ? buf.get(buf.position()) & 0xff : -1;
+    }
+
+    int next() {
+        int c = buf.get() & 0xff;
+        if (c == '\n') {
+            line++;
+            lineStart = buf.position();
+        }
+        return c;
+    }
+
+    /**
+     * Consume the next byte if it matches
+     * @param c the byte to look for
+     * @return true if it was consumed
+     */
+    boolean consume(char c) {
+        if (peek() == c) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    void expect(char c) throws PathFormatException {
+        if (!consume(c)) {
+            throw error("expected '" + c + "' but found " + describe(peek()));
+        }
+    }
+
+    void skipWhitespace() {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+            next();
+            c = peek();
+        }
+    }
+
+    /**
+     * Skip spaces without leaving the current line
+     */
+    void skipSpaces() {
+        int c = peek();
+        while (c == ' ' || c == '\t') {
+            next();
+            c = peek();
+        }
+    }
+
+    void skipLine() {
+        while (buf.hasRemaining() && next() != '\n') {
+            // skip
+        }
+    }
+
+    boolean atLineEnd() {
+        int c = peek();
+        return c == -1 || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Parse a decimal number. Numbers with at most 15 significant digits and
+     * a small exponent, which is every number PathWeaver and PathPlanner
+     * write, are parsed without allocating. Anything else falls back to
+     * {@link Double#parseDouble}. Both give the same result.
+     * @return the number
+     * @throws PathFormatException if there is no number here
+     */
+    double readNumber() throws PathFormatException {
+        int start = buf.position();
+        int startLine = line;
+        int startColumn = column();
+
+        boolean negative = false;
+        if (peek() == '-' || peek() == '+') {
+            negative = next() == '-';
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        boolean any = false;
+
+        int c;
+        while (isDigit(c = peek())) {
+            next();
+            any = true;
+            if (mantissa != 0 || c != '0') {
+                if (++digits > MAX_EXACT_DIGITS) {
+                    exact = false;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+            }
+        }
+
+        if (consume('.')) {
+            while (isDigit(c = peek())) {
+                next();
+                any = true;
+                if (mantissa != 0 || c != '0') {
+                    if (++digits > MAX_EXACT_DIGITS) {
+                        exact = false;
+                    } else {
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
+                }
+                exponent--;
+            }
+        }
+
+        if (!any) {
+            throw new PathFormatException(file, startLine, startColumn, "expected a number but found " + describe(c));
+        }
+
+        if (peek() == 'e' || peek() == 'E') {
+            next();
+            boolean negativeExponent = false;
+            if (peek() == '-' || peek() == '+') {
+                negativeExponent = next() == '-';
+            }
+            if (!isDigit(peek())) {
+                throw error("expected an exponent but found " + describe(peek()));
+            }
+            int value = 0;
+            while (isDigit(c = peek())) {
+                next();
+                if (value < 10000) {
+                    value = value * 10 + (c - '0');
+                }
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (exact && exponent >= -22 && exponent <= 22) {
+            double value = exponent >= 0
+                    ? mantissa * POWERS_OF_TEN[exponent]
+                    : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+
+        byte[] text = new byte[buf.position() - start];
+        ByteBuffer slice = buf.duplicate();
+        slice.position(start);
+        slice.get(text);
+        try {
+            return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new PathFormatException(file, startLine, startColumn, "invalid number");
+        }
+    }
+
+    /**
+     * Consume a word if it comes next
+     * @param word the word to look for
+     * @return true if it was consumed
+     */
+    boolean matchWord(String word) {
+        int pos = buf.position();
+        if (buf.limit() - pos < word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); ++i) {
+            if (buf.get(pos + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        buf.position(pos + word.length());
+        return true;
+    }
+
+    /**
+     * Read a quoted string and find it in a list of names, without
+     * allocating
+     * @param names the names to look for, as ASCII bytes
+     * @return the index of the matching name, or -1 for any other string
+     * @throws PathFormatException if there is no string here
+     */
+    int readName(byte[][] names) throws PathFormatException {
+        expect('"');
+        int start = buf.position();
+        while (true) {
+            if (atEnd()) {
+                throw error("unterminated string");
+            }
+            int c = next();
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\' && !atEnd()) {
+                next();
+            }
+        }
+        int length = buf.position() - 1 - start;
+
+        for (int n = 0; n < names.length; ++n) {
+            byte[] name = names[n];
+            if (name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && buf.get(start + i) == name[i]) {
+                i++;
+            }
+            if (i == length) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    PathFormatException error(String message) {
+        return new PathFormatException(file, line, column(), message);
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private int column() {
+        return buf.position() - lineStart + 1;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String describe(int c) {
+        if (c == -1) {
+            return "end of file";
+        }
+        if (c == '\n' || c == '\r') {
+            return "end of line";
+        }
+        return "'" + (char) c + "'";
+    }
+
+}
@@ -0,0 +1,333 @@
+package com.lightningrobotics.common.auto.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+import com.lightningrobotics.common.auto.trajectory.TrajectoryState;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Loaders for PathWeaver {@code .path} files and PathPlanner (WPILib JSON)
+ * trajectories. Files are parsed straight from a memory mapped buffer, and
+ * problems are reported as a {@link PathFormatException} with the line and
+ * column they were found at.
+ *
+ * The time each file took to load is kept, and can be put on the dashboard
+ * with {@link #publishLoadTimes()}.
+ */
+public final class PathFiles {
+
+    // PathWeaver puts the origin at the top of the field
+    private static final double FIELD_HEIGHT = 8.229;
+
+    // names in a state, the numbers are stored at the same index of the fields
+    private static final byte[][] STATE_NAMES = names("time", "velocity", "acceleration", "pose", "curvature");
+    private static final int TIME = 0;
+    private static final int VELOCITY = 1;
+    private static final int ACCELERATION = 2;
+    private static final int POSE = 3;
+    private static final int CURVATURE = 4;
+
+    // the pose is stored in the fields as heading, x, y
+    private static final int HEADING = POSE;
+    private static final int X = 5;
+    private static final int Y = 6;
+    private static final String[] FIELD_NAMES = {
+        "time", "velocity", "acceleration", "rotation", "curvature", "translation x", "translation y"
+    };
+
+    private static final byte[][] POSE_NAMES = names("translation", "rotation");
+    private static final byte[][] TRANSLATION_NAMES = names("x", "y");
+    private static final byte[][] ROTATION_NAMES = names("radians");
+    private static final byte[][] NO_NAMES = new byte[0][];
+
+    private static final Map<String, Double> loadTimes = new ConcurrentHashMap<>();
+
+    private PathFiles() { }
+
+    /**
+     * Read the waypoints of a PathWeaver path file, relative to the first
+     * waypoint
+     * @param file the path file
+     * @return the waypoints
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static List<Pose2d> readPathWeaver(File file) throws IOException {
+        long start = System.nanoTime();
+        PathFileReader in = PathFileReader.open(file);
+        in.skipLine(); // header
+
+        List<Pose2d> waypoints = new ArrayList<>();
+        double startX = 0;
+        double startY = 0;
+        double startTheta = 0;
+
+        while (!in.atEnd()) {
+            in.skipSpaces();
+            if (in.atLineEnd()) {
+                in.skipLine();
+                continue;
+            }
+
+            double x = readField(in);
+            in.expect(',');
+            double y = FIELD_HEIGHT + readField(in);
+            in.expect(',');
+            double tangentX = readField(in);
+            in.expect(',');
+            double tangentY = readField(in);
+            in.skipLine(); // fixed theta, reversed and name are not used
+
+            double theta = Math.toDegrees(Math.atan2(tangentY, tangentX));
+            if (waypoints.isEmpty()) {
+                startX = x;
+                startY = y;
+                startTheta = theta;
+                waypoints.add(new Pose2d(0, 0, Rotation2d.fromDegrees(0)));
+                continue;
+            }
+
+            // rotate into the frame of the first waypoint
+            x -= startX;
+            y -= startY;
+            double xPrime = (x * Math.cos(Math.toRadians(startTheta)))
+                    + (y * Math.sin(Math.toRadians(startTheta)));
+            double yPrime = -(x * Math.sin(Math.toRadians(startTheta)))
+                    + (y * Math.cos(Math.toRadians(startTheta)));
+
+            theta -= startTheta;
+            if (theta < -180) {
+                theta = theta + 360;
+            } else if (theta > 180) {
+                theta = theta - 360;
+            }
+
+            waypoints.add(new Pose2d(xPrime, yPrime, Rotation2d.fromDegrees(theta)));
+        }
+
+        if (waypoints.size() < 2) {
+            throw in.error("a path needs at least two waypoints");
+        }
+
+        loaded(file, start);
+        return waypoints;
+    }
+
+    /**
+     * Read a trajectory in the WPILib JSON format PathPlanner and PathWeaver
+     * generate
+     * @param file the JSON file
+     * @return the trajectory
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static Trajectory readPathPlanner(File file) throws IOException {
+        long start = System.nanoTime();
+        PathFileReader in = PathFileReader.open(file);
+        List<TrajectoryState> states = new ArrayList<>();
+        double[] fields = new double[FIELD_NAMES.length];
+
+        in.skipWhitespace();
+        in.expect('[');
+        in.skipWhitespace();
+        if (!in.consume(']')) {
+            do {
+                in.skipWhitespace();
+                states.add(readState(in, fields));
+                in.skipWhitespace();
+            } while (in.consume(','));
+            in.expect(']');
+        }
+
+        if (states.isEmpty()) {
+            throw in.error("trajectory has no states");
+        }
+
+        loaded(file, start);
+        return new Trajectory(states);
+    }
+
+    /**
+     * Read every JSON trajectory in a directory, in parallel. Files that
+     * cannot be read are reported and left out.
+     * @param dir the directory, usually deploy/pathplanner/generatedJSON
+     * @return the trajectories by file name
+     */
+    public static Map<String, Trajectory> readPathPlannerDirectory(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".json"));
+        Map<String, Trajectory> trajectories = new ConcurrentHashMap<>();
+        if (files == null) {
+            return trajectories;
+        }
+
+        Arrays.stream(files).parallel().forEach(file -> {
+            try {
+                trajectories.put(file.getName(), readPathPlanner(file));
+            } catch (IOException e) {
+                System.err.println("Unable to load trajectory " + e.getMessage());
+            }
+        });
+        return trajectories;
+    }
+
+    /**
+     * @return how long each file took to load, in milliseconds, by file name
+     */
+    public static Map<String, Double> getLoadTimes() {
+        return new TreeMap<>(loadTimes);
+    }
+
+    /**
+     * Put the load time of every file loaded so far on the dashboard
+     */
+    public static void publishLoadTimes() {
+        for (Map.Entry<String, Double> entry : loadTimes.entrySet()) {
+            SmartDashboard.putNumber("Paths/" + entry.getKey() + " ms", entry.getValue());
+        }
+    }
+
+    private static double readField(PathFileReader in) throws PathFormatException {
+        in.skipSpaces();
+        double value = in.readNumber();
+        in.skipSpaces();
+        return value;
+    }
+
+    private static TrajectoryState readState(PathFileReader in, double[] fields) throws PathFormatException {
+        Arrays.fill(fields, Double.NaN);
+        in.expect('{');
+        in.skipWhitespace();
+        if (!in.consume('}')) {
+            do {
+                in.skipWhitespace();
+                int name = in.readName(STATE_NAMES);
+                in.skipWhitespace();
+                in.expect(':');
+                in.skipWhitespace();
+                switch (name) {
+                    case TIME:
+                    case VELOCITY:
+                    case ACCELERATION:
+                    case CURVATURE:
+                        fields[name] = in.readNumber();
+                        break;
+                    case POSE:
+                        readPose(in, fields);
+                        break;
+                    default:
+                        skipValue(in);
+                }
+                in.skipWhitespace();
+            } while (in.consume(','));
+            in.expect('}');
+        }
+
+        for (int i = 0; i < fields.length; ++i) {
+            if (Double.isNaN(fields[i])) {
+                throw in.error("state is missing " + FIELD_NAMES[i]);
+            }
+        }
+
+        return new TrajectoryState(fields[TIME], fields[VELOCITY], fields[ACCELERATION],
+                new Pose2d(fields[X], fields[Y], new Rotation2d(fields[HEADING])), fields[CURVATURE]);
+    }
+
+    private static void readPose(PathFileReader in, double[] fields) throws PathFormatException {
+        in.expect('{');
+        in.skipWhitespace();
+        if (in.consume('}')) {
+            return;
+        }
+        do {
+            in.skipWhitespace();
+            int name = in.readName(POSE_NAMES);
+            in.skipWhitespace();
+            in.expect(':');
+            in.skipWhitespace();
+            if (name == 0) {
+                readObject(in, TRANSLATION_NAMES, fields, X);
+            } else if (name == 1) {
+                readObject(in, ROTATION_NAMES, fields, HEADING);
+            } else {
+                skipValue(in);
+            }
+            in.skipWhitespace();
+        } while (in.consume(','));
+        in.expect('}');
+    }
+
+    // reads an object of numbers, storing the ones in names from offset on
+    private static void readObject(PathFileReader in, byte[][] names, double[] fields, int offset)
+            throws PathFormatException {
+        in.expect('{');
+        in.skipWhitespace();
+        if (in.consume('}')) {
+            return;
+        }
+        do {
+            in.skipWhitespace();
+            int name = in.readName(names);
+            in.skipWhitespace();
+            in.expect(':');
+            in.skipWhitespace();
+            if (name >= 0) {
+                fields[offset + name] = in.readNumber();
+            } else {
+                skipValue(in);
+            }
+            in.skipWhitespace();
+        } while (in.consume(','));
+        in.expect('}');
+    }
+
+    private static void skipValue(PathFileReader in) throws PathFormatException {
+        int c = in.peek();
+        if (c == '"') {
+            in.readName(NO_NAMES);
+        } else if (c == '{' || c == '[') {
+            char close = c == '{' ? '}' : ']';
+            in.next();
+            in.skipWhitespace();
+            if (in.consume(close)) {
+                return;
+            }
+            do {
+                in.skipWhitespace();
+                if (close == '}') {
+                    in.readName(NO_NAMES);
+                    in.skipWhitespace();
+                    in.expect(':');
+                    in.skipWhitespace();
+                }
+                skipValue(in);
+                in.skipWhitespace();
+            } while (in.consume(','));
+            in.expect(close);
+        } else if (!(in.matchWord("true") || in.matchWord("false") || in.matchWord("null"))) {
+            in.readNumber();
+        }
+    }
+
+    private static void loaded(File file, long start) {
+        loadTimes.put(file.getName(), (System.nanoTime() - start) / 1e6);
+    }
+
+    private static byte[][] names(String... names) {
+        byte[][] bytes = new byte[names.length][];
+        for (int i = 0; i < names.length; ++i) {
+            bytes[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.lightningrobotics.common.auto.loader;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A path file that could not be parsed, with the line and column the
+ * problem was found at
+ */
+public class PathFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final File file;
+    private final int line;
+    private final int column;
+
+    public PathFormatException(File file, int line, int column, String message) {
+        super(file.getName() + ":" + line + ":" + column + ": " + message);
+        this.file = file;
+        this.line = line;
+        this.column = column;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the line of the problem, starting from 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the column of the problem, starting from 1
+     */
+    public int getColumn() {
+        return column;
+    }
+
+}
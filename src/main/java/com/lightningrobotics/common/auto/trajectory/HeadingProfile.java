@@ -0,0 +1,228 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import com.lightningrobotics.common.util.LightningMath;
+
+/**
+ * The heading of a holonomic drivetrain over time, parameterized separately
+ * from the {@link Trajectory} its translation follows and sampled alongside
+ * it.
+ *
+ * The profile turns through a list of target headings, each to be reached
+ * at a time. Between two targets the heading follows a trapezoidal profile
+ * along the shortest way around, slowed down so it arrives on time. If the
+ * turn cannot be made in time with the given limits it is made as fast as
+ * they allow and arrives late, pushing the next turn back. The robot comes
+ * to rest at each target.
+ *
+ * Everything is worked out up front, so sampling with a {@link Sampler}
+ * allocates nothing.
+ */
+public class HeadingProfile {
+
+    private final double maxAcceleration;
+
+    // one turn per pair of consecutive targets
+    private final int length;
+    private final double[] start;
+    private final double[] startHeading;
+    private final double[] direction;
+    private final double[] cruiseVelocity;
+    private final double[] accelerationTime;
+    private final double[] cruiseTime;
+    private final double[] end;
+    private final double[] endHeading;
+
+    /**
+     * A mutable heading sample for {@link Sampler#sample} to write into
+     */
+    public static class State {
+        public double headingRadians;
+        public double angularVelocityRadPerSec;
+        public double angularAccelerationRadPerSecSq;
+    }
+
+    /**
+     * Samples a heading profile, remembering its position between calls.
+     * Not thread safe, each follower should have its own.
+     */
+    public class Sampler {
+        private int index = 0;
+
+        /**
+         * Sample the profile. Sampling at a later time than the last call is
+         * amortized constant time.
+         * @param timeSeconds time since the start of the profile
+         * @param out the state to write the sample into
+         * @return out
+         */
+        public State sample(double timeSeconds, State out) {
+            if (length == 0) {
+                hold(startHeading[0], out);
+                return out;
+            }
+
+            if (timeSeconds < start[index]) {
+                index = 0;
+            }
+            while (index < length - 1 && timeSeconds >= start[index + 1]) {
+                index++;
+            }
+
+            if (timeSeconds <= start[index]) {
+                hold(startHeading[index], out);
+            } else if (timeSeconds >= end[index]) {
+                hold(endHeading[index], out);
+            } else {
+                turn(index, timeSeconds - start[index], out);
+            }
+            return out;
+        }
+
+        /**
+         * Go back to the start of the profile
+         */
+        public void reset() {
+            index = 0;
+        }
+    }
+
+    /**
+     * Profiles the turns through a list of target headings
+     * @param timesSeconds when each heading should be reached, increasing,
+     *                     the first is when the profile starts
+     * @param headingsRadians the target headings
+     * @param maxAngularVelocity the fastest the heading may change, in
+     *                           radians per second
+     * @param maxAngularAcceleration the fastest the heading may speed up or
+     *                               slow down, in radians per second squared
+     */
+    public HeadingProfile(double[] timesSeconds, double[] headingsRadians, double maxAngularVelocity,
+            double maxAngularAcceleration) {
+        if (timesSeconds.length != headingsRadians.length || timesSeconds.length == 0) {
+            throw new IllegalArgumentException("need the same number of times and headings, at least one");
+        }
+        if (maxAngularVelocity <= 0 || maxAngularAcceleration <= 0) {
+            throw new IllegalArgumentException("angular limits must be positive");
+        }
+
+        maxAcceleration = maxAngularAcceleration;
+        length = timesSeconds.length - 1;
+        int size = Math.max(1, length);
+        start = new double[size];
+        startHeading = new double[size];
+        direction = new double[size];
+        cruiseVelocity = new double[size];
+        accelerationTime = new double[size];
+        cruiseTime = new double[size];
+        end = new double[size];
+        endHeading = new double[size];
+
+        startHeading[0] = headingsRadians[0];
+        start[0] = timesSeconds[0];
+        double previousEnd = timesSeconds[0];
+        double heading = headingsRadians[0];
+        for (int i = 0; i < length; ++i) {
+            double delta = LightningMath.deltaThetaInRadians(heading, headingsRadians[i + 1]);
+            double distance = Math.abs(delta);
+            start[i] = Math.max(timesSeconds[i], previousEnd);
+            startHeading[i] = heading;
+            direction[i] = Math.signum(delta);
+
+            // cruise velocity that takes exactly the time available,
+            // from v / a + d / v = t, or the fastest allowed if that is too slow.
+            // An earlier turn that ran late leaves no time at all.
+            double available = timesSeconds[i + 1] - start[i];
+            double a = maxAngularAcceleration;
+            double discriminant = a * a * available * available - 4 * a * distance;
+            double velocity = available > 0 && discriminant >= 0
+                    ? (a * available - Math.sqrt(discriminant)) / 2
+                    : Math.sqrt(a * distance);
+            velocity = Math.min(velocity, maxAngularVelocity);
+
+            if (distance == 0 || velocity == 0) {
+                cruiseVelocity[i] = 0;
+                accelerationTime[i] = 0;
+                cruiseTime[i] = 0;
+            } else {
+                cruiseVelocity[i] = velocity;
+                accelerationTime[i] = velocity / a;
+                cruiseTime[i] = Math.max(0, distance / velocity - velocity / a);
+            }
+            end[i] = start[i] + 2 * accelerationTime[i] + cruiseTime[i];
+
+            heading += delta;
+            endHeading[i] = heading;
+            previousEnd = end[i];
+        }
+    }
+
+    /**
+     * Turns from the start of a trajectory to the end of it, so the robot
+     * starts and ends facing the way the trajectory does
+     * @param trajectory the trajectory the profile is followed alongside
+     * @param maxAngularVelocity the fastest the heading may change
+     * @param maxAngularAcceleration the fastest the heading may speed up or slow down
+     * @return the profile
+     */
+    public static HeadingProfile across(Trajectory trajectory, double maxAngularVelocity,
+            double maxAngularAcceleration) {
+        var states = trajectory.getStates();
+        return new HeadingProfile(
+                new double[] { 0, trajectory.getTotalTimeSeconds() },
+                new double[] {
+                    states.get(0).poseMeters.getRotation().getRadians(),
+                    states.get(states.size() - 1).poseMeters.getRotation().getRadians() },
+                maxAngularVelocity, maxAngularAcceleration);
+    }
+
+    /**
+     * @return a new sampler positioned at the start of the profile
+     */
+    public Sampler sampler() {
+        return new Sampler();
+    }
+
+    /**
+     * @return when the last turn is finished
+     */
+    public double getTotalTimeSeconds() {
+        return length == 0 ? start[0] : end[length - 1];
+    }
+
+    private void hold(double heading, State out) {
+        out.headingRadians = LightningMath.boundThetaNegPiToPi(heading);
+        out.angularVelocityRadPerSec = 0;
+        out.angularAccelerationRadPerSecSq = 0;
+    }
+
+    // t is the time since the turn started
+    private void turn(int i, double t, State out) {
+        final double a = maxAcceleration;
+        final double v = cruiseVelocity[i];
+        final double ta = accelerationTime[i];
+        final double tc = cruiseTime[i];
+
+        double travelled;
+        double velocity;
+        double accel;
+        if (t < ta) {
+            travelled = 0.5 * a * t * t;
+            velocity = a * t;
+            accel = a;
+        } else if (t < ta + tc) {
+            travelled = 0.5 * a * ta * ta + v * (t - ta);
+            velocity = v;
+            accel = 0;
+        } else {
+            double left = 2 * ta + tc - t;
+            travelled = a * ta * ta + v * tc - 0.5 * a * left * left;
+            velocity = a * left;
+            accel = -a;
+        }
+
+        out.headingRadians = LightningMath.boundThetaNegPiToPi(startHeading[i] + direction[i] * travelled);
+        out.angularVelocityRadPerSec = direction[i] * velocity;
+        out.angularAccelerationRadPerSecSq = direction[i] * accel;
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.lightningrobotics.common.util.LightningMath;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * A {@link Trajectory} packed into one primitive array per field, for
+ * sampling in a control loop. Get one with {@link Trajectory#pack()}.
+ *
+ * Followers sample at increasing times, so a {@link Sampler} remembers where
+ * its last sample was and only walks forward from there, writing into a
+ * {@link State} owned by the caller. Sampling allocates nothing.
+ */
+public class PackedTrajectory {
+
+    private final int length;
+    private final double[] time;
+    private final double[] velocity;
+    private final double[] acceleration;
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;
+    private final double[] curvature;
+
+    /**
+     * A mutable trajectory state for {@link Sampler#sample} to write into
+     */
+    public static class State {
+        public double timeSeconds;
+        public double velocityMetersPerSecond;
+        public double accelerationMetersPerSecondSq;
+        public double xMeters;
+        public double yMeters;
+        public double headingRadians;
+        public double curvatureRadPerMeter;
+
+        public Pose2d getPose() {
+            return new Pose2d(xMeters, yMeters, new Rotation2d(headingRadians));
+        }
+
+        public TrajectoryState toTrajectoryState() {
+            return new TrajectoryState(timeSeconds, velocityMetersPerSecond, accelerationMetersPerSecondSq,
+                    getPose(), curvatureRadPerMeter);
+        }
+    }
+
+    /**
+     * Samples a trajectory, remembering its position between calls. Not
+     * thread safe, each follower should have its own.
+     */
+    public class Sampler {
+        // index of the first state at or after the last sample time
+        private int index = 1;
+
+        /**
+         * Sample the trajectory. Sampling at a later time than the last call
+         * is amortized constant time, an earlier time falls back to a binary
+         * search.
+         * @param timeSeconds time since the start of the trajectory
+         * @param out the state to write the sample into
+         * @return out
+         */
+        public State sample(double timeSeconds, State out) {
+            if (timeSeconds <= time[0]) {
+                copy(0, out);
+                return out;
+            }
+            if (timeSeconds >= time[length - 1]) {
+                copy(length - 1, out);
+                return out;
+            }
+
+            if (timeSeconds < time[index - 1]) {
+                index = search(timeSeconds);
+            } else {
+                while (time[index] < timeSeconds) {
+                    index++;
+                }
+            }
+
+            int prev = index - 1;
+            if (Math.abs(time[index] - time[prev]) < 1E-9) {
+                copy(index, out);
+                return out;
+            }
+            interpolate(prev, index, (timeSeconds - time[prev]) / (time[index] - time[prev]), out);
+            return out;
+        }
+
+        /**
+         * Go back to the start of the trajectory
+         */
+        public void reset() {
+            index = 1;
+        }
+    }
+
+    /**
+     * Packs the states of a trajectory
+     * @param states the states, at least one
+     */
+    public PackedTrajectory(List<TrajectoryState> states) {
+        length = states.size();
+        time = new double[length];
+        velocity = new double[length];
+        acceleration = new double[length];
+        x = new double[length];
+        y = new double[length];
+        heading = new double[length];
+        curvature = new double[length];
+
+        for (int i = 0; i < length; ++i) {
+            var state = states.get(i);
+            time[i] = state.timeSeconds;
+            velocity[i] = state.velocityMetersPerSecond;
+            acceleration[i] = state.accelerationMetersPerSecondSq;
+            x[i] = state.poseMeters.getX();
+            y[i] = state.poseMeters.getY();
+            heading[i] = state.poseMeters.getRotation().getRadians();
+            curvature[i] = state.curvatureRadPerMeter;
+        }
+    }
+
+    /**
+     * @return a new sampler positioned at the start of the trajectory
+     */
+    public Sampler sampler() {
+        return new Sampler();
+    }
+
+    public int size() {
+        return length;
+    }
+
+    public double getTotalTimeSeconds() {
+        return time[length - 1];
+    }
+
+    /**
+     * Copy a state out of the trajectory
+     * @param i the state index
+     * @param out the state to write into
+     * @return out
+     */
+    public State get(int i, State out) {
+        copy(i, out);
+        return out;
+    }
+
+    /**
+     * Unpack back into a list of states
+     * @return the states
+     */
+    public List<TrajectoryState> toStates() {
+        var states = new ArrayList<TrajectoryState>(length);
+        var state = new State();
+        for (int i = 0; i < length; ++i) {
+            copy(i, state);
+            states.add(state.toTrajectoryState());
+        }
+        return states;
+    }
+
+    // first index at or after the given time, as in Trajectory.sample
+    private int search(double timeSeconds) {
+        int low = 1;
+        int high = length - 1;
+        while (low != high) {
+            int mid = (low + high) / 2;
+            if (time[mid] < timeSeconds) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void copy(int i, State out) {
+        out.timeSeconds = time[i];
+        out.velocityMetersPerSecond = velocity[i];
+        out.accelerationMetersPerSecondSq = acceleration[i];
+        out.xMeters = x[i];
+        out.yMeters = y[i];
+        out.headingRadians = heading[i];
+        out.curvatureRadPerMeter = curvature[i];
+    }
+
+    // same as TrajectoryState.interpolate, without the intermediate objects
+    private void interpolate(int start, int end, double i, State out) {
+        final double newT = LightningMath.lerp(time[start], time[end], i);
+        final double deltaT = newT - time[start];
+
+        final double v = velocity[start];
+        final double a = acceleration[start];
+        final boolean reversing = v < 0 || Math.abs(v) < 1E-9 && a < 0;
+
+        final double newV = v + (a * deltaT);
+        final double newS = (v * deltaT + 0.5 * a * deltaT * deltaT) * (reversing ? -1.0 : 1.0);
+
+        final double dx = x[end] - x[start];
+        final double dy = y[end] - y[start];
+        final double frac = newS / Math.hypot(dx, dy);
+
+        out.timeSeconds = newT;
+        out.velocityMetersPerSecond = newV;
+        out.accelerationMetersPerSecondSq = a;
+        out.xMeters = x[start] + dx * frac;
+        out.yMeters = y[start] + dy * frac;
+        out.headingRadians = LightningMath.boundThetaNegPiToPi(
+                heading[start] + LightningMath.deltaThetaInRadians(heading[start], heading[end]) * frac);
+        out.curvatureRadPerMeter = LightningMath.lerp(curvature[start], curvature[end], frac);
+    }
+
+}
@@ -9,6 +9,9 @@ package com.lightningrobotics.common.auto.trajectory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -16,6 +19,7 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.spline.PoseWithCurvature;
+import edu.wpi.first.math.spline.QuinticHermiteSpline;
 import edu.wpi.first.math.spline.Spline;
 import edu.wpi.first.math.spline.SplineHelper;
 import edu.wpi.first.math.spline.SplineParameterizer;
@@ -28,8 +32,13 @@ import edu.wpi.first.math.spline.SplineParameterizer.MalformedSplineException;
  */
 public class Trajectory {
 
+    private static final Transform2d FLIP = new Transform2d(new Translation2d(), Rotation2d.fromDegrees(180.0));
+
+    private static ForkJoinPool splinePool;
+
     private final double totalTime;
     private final List<TrajectoryState> trajectoryStates;
+    private volatile PackedTrajectory packed;
 
     /**
      * Constructs an empty trajectory.
@@ -57,22 +66,42 @@ public class Trajectory {
      * @return The generated trajectory.
      */
     public static Trajectory from(List<Pose2d> waypoints, TrajectoryConfig config) {
-        List<Pose2d> newWaypoints = new ArrayList<>();
+        var splines = SplineHelper.getQuinticSplinesFromWaypoints(orient(waypoints, config.isReversed()));
+        return fromSplines(splines, config);
+    }
 
-        // Make list of new waypoints with flip if reversed
-        final var flip = new Transform2d(new Translation2d(), Rotation2d.fromDegrees(180.0));
-        if (config.isReversed()) {
-            for (Pose2d originalWaypoint : waypoints) {
-                newWaypoints.add(originalWaypoint.plus(flip));
-            }
-        } else {
-            newWaypoints.addAll(waypoints);
+    /**
+     * Turns waypoints around if the trajectory is reversed, so the splines
+     * are built facing the way the robot travels.
+     * @param waypoints The waypoints.
+     * @param reversed  If the trajectory is reversed.
+     * @return The waypoints to build splines through.
+     */
+    private static List<Pose2d> orient(List<Pose2d> waypoints, boolean reversed) {
+        if (!reversed) {
+            return waypoints;
+        }
+        var newWaypoints = new ArrayList<Pose2d>(waypoints.size());
+        for (Pose2d originalWaypoint : waypoints) {
+            newWaypoints.add(originalWaypoint.plus(FLIP));
         }
+        return newWaypoints;
+    }
 
+    /**
+     * Parameterizes splines built by {@link #orient} and time parameterizes
+     * the points.
+     * @param splines The splines, facing the way the robot travels.
+     * @param config  The configuration for the trajectory.
+     * @return The generated trajectory, or null if a spline is malformed.
+     */
+    private static Trajectory fromSplines(Spline[] splines, TrajectoryConfig config) {
         // Get the spline points
         List<PoseWithCurvature> points;
         try {
-            points = splinePointsFromSplines(SplineHelper.getQuinticSplinesFromWaypoints(newWaypoints));
+            points = config.isParallel() && splines.length > 1
+                    ? splinePointsFromSplinesParallel(splines)
+                    : splinePointsFromSplines(splines);
         } catch (MalformedSplineException ex) {
             return null;
         }
@@ -80,7 +109,7 @@ public class Trajectory {
         // Change the points back to their original orientation.
         if (config.isReversed()) {
             for (var point : points) {
-                point.poseMeters = point.poseMeters.plus(flip);
+                point.poseMeters = point.poseMeters.plus(FLIP);
                 point.curvatureRadPerMeter *= -1;
             }
         }
@@ -91,6 +120,80 @@ public class Trajectory {
                 config.getMaxAcceleration(), config.isReversed());
     }
 
+    /**
+     * Plans a new trajectory that follows this one up to a point in time and
+     * then heads through new waypoints. The states before that time are kept
+     * as they are, and only the new tail is splined and time parameterized,
+     * starting from the pose, curvature and speed this trajectory has at that
+     * time. So a follower can switch to the result without its velocity or
+     * turn rate jumping, as long as the robot can still stop by the end of
+     * the new tail.
+     * 
+     * @param timeSeconds The time to leave this trajectory at.
+     * @param waypoints   The waypoints for the new tail to pass through, not
+     *                    including the pose at timeSeconds.
+     * @param config      The configuration to parameterize the tail with,
+     *                    its start velocity is ignored.
+     * @return The new trajectory, on the same time base as this one, or null
+     *         if the new tail makes a malformed spline.
+     */
+    public Trajectory replan(double timeSeconds, List<Pose2d> waypoints, TrajectoryConfig config) {
+        timeSeconds = Math.max(0, Math.min(timeSeconds, totalTime));
+        var split = sample(timeSeconds);
+
+        var tailWaypoints = new ArrayList<Pose2d>(waypoints.size() + 1);
+        tailWaypoints.add(split.poseMeters);
+        tailWaypoints.addAll(waypoints);
+
+        var tailConfig = new TrajectoryConfig(config.getMaxVelocity(), config.getMaxAcceleration())
+                .addConstraints(config.getConstraints())
+                .setStartVelocity(Math.min(Math.abs(split.velocityMetersPerSecond), config.getMaxVelocity()))
+                .setEndVelocity(config.getEndVelocity())
+                .setReversed(config.isReversed())
+                .setParallel(config.isParallel());
+
+        // A spline through the pose alone starts out straight, so give the
+        // first one the curvature the robot is already turning at. With the
+        // first derivative along the heading, a second derivative of k * s^2
+        // across it starts the spline at curvature k.
+        var oriented = orient(tailWaypoints, config.isReversed());
+        var splines = SplineHelper.getQuinticSplinesFromWaypoints(oriented);
+        var start = oriented.get(0);
+        var next = oriented.get(1);
+        double cos = start.getRotation().getCos();
+        double sin = start.getRotation().getSin();
+        double curvature = config.isReversed() ? -split.curvatureRadPerMeter : split.curvatureRadPerMeter;
+        double scalar = 1.2 * start.getTranslation().getDistance(next.getTranslation());
+        double lateral = curvature * scalar * scalar;
+        var startVector = new Spline.ControlVector(
+                new double[] { start.getX(), scalar * cos, -lateral * sin },
+                new double[] { start.getY(), scalar * sin, lateral * cos });
+        var nextVector = new Spline.ControlVector(
+                new double[] { next.getX(), scalar * next.getRotation().getCos(), 0.0 },
+                new double[] { next.getY(), scalar * next.getRotation().getSin(), 0.0 });
+        splines[0] = new QuinticHermiteSpline(startVector.x, nextVector.x, startVector.y, nextVector.y);
+
+        var tail = fromSplines(splines, tailConfig);
+        if (tail == null) {
+            return null;
+        }
+
+        // the states before the split are already parameterized, so keep them
+        var states = new ArrayList<TrajectoryState>(trajectoryStates.size() + tail.trajectoryStates.size());
+        for (var state : trajectoryStates) {
+            if (state.timeSeconds >= timeSeconds) {
+                break;
+            }
+            states.add(state);
+        }
+
+        for (var state : tail.trajectoryStates) {
+            states.add(new TrajectoryState(state.timeSeconds + timeSeconds, state.velocityMetersPerSecond,
+                    state.accelerationMetersPerSecondSq, state.poseMeters, state.curvatureRadPerMeter));
+        }
+        return new Trajectory(states);
+    }
+
     /**
      * Generate spline points from a vector of splines by parameterizing the splines.
      * @param splines The splines to parameterize.
@@ -119,6 +222,50 @@ public class Trajectory {
         return splinePoints;
     }
 
+    /**
+     * Generate spline points from a vector of splines, parameterizing the splines
+     * concurrently. The result is identical to
+     * {@link #splinePointsFromSplines(Spline[])}.
+     * @param splines The splines to parameterize.
+     * @return The spline points for use in time parameterization of a trajectory.
+     * @throws MalformedSplineException When the spline is malformed
+     */
+    private static List<PoseWithCurvature> splinePointsFromSplinesParallel(Spline[] splines) {
+        var pool = getSplinePool();
+        List<ForkJoinTask<List<PoseWithCurvature>>> tasks = new ArrayList<>(splines.length);
+        for (final var spline : splines) {
+            tasks.add(pool.submit(() -> SplineParameterizer.parameterize(spline)));
+        }
+
+        // Stitch the segments back together in order, dropping the first point
+        // of each as it duplicates the last point of the previous segment.
+        var splinePoints = new ArrayList<PoseWithCurvature>();
+        splinePoints.add(splines[0].getPoint(0.0));
+        for (var task : tasks) {
+            List<PoseWithCurvature> points;
+            try {
+                points = task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating trajectory", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            splinePoints.addAll(points.subList(1, points.size()));
+        }
+        return splinePoints;
+    }
+
+    private static synchronized ForkJoinPool getSplinePool() {
+        if (splinePool == null) {
+            splinePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return splinePool;
+    }
+
     /**
      * Returns the initial pose of the trajectory.
      * 
@@ -146,6 +293,22 @@ public class Trajectory {
         return trajectoryStates;
     }
 
+    /**
+     * Returns the trajectory packed for allocation free sampling. The packed
+     * form is built on the first call and shared after that, so the states
+     * must not be modified once this has been called.
+     * 
+     * @return The packed trajectory.
+     */
+    public PackedTrajectory pack() {
+        var result = packed;
+        if (result == null) {
+            result = new PackedTrajectory(trajectoryStates);
+            packed = result;
+        }
+        return result;
+    }
+
     /**
      * Sample the trajectory at a point in time.
      * 
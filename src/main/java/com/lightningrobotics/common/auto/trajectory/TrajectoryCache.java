@@ -0,0 +1,333 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Cache of generated trajectories, keyed by a hash of the waypoints and every
+ * {@link TrajectoryConfig} field that affects generation. Recently used
+ * trajectories are kept in memory, and every generated trajectory is also
+ * stored in a compact binary file so it never has to be generated again,
+ * even after a restart. Files can be produced ahead of time with
+ * {@link com.lightningrobotics.common.auto.PathPregenerator}.
+ *
+ * Trajectories with a constraint that has no
+ * {@link TrajectoryConstraint#getCacheKey() cache key} are always generated.
+ */
+public class TrajectoryCache {
+
+    public static final String EXTENSION = ".traj";
+
+    // bump whenever generation changes in a way that alters its output
+    private static final int GENERATOR_VERSION = 1;
+
+    private static final int MAGIC = 0x4C52544A; // "LRTJ"
+    private static final short VERSION = 1;
+    private static final int KEY_SIZE = 16;
+    private static final int HEADER_SIZE = 4 + 2 + KEY_SIZE + 4;
+    private static final int STATE_SIZE = 7 * 8;
+
+    private static TrajectoryCache instance;
+
+    private final LinkedHashMap<String, Trajectory> memory;
+    private int capacity = 16;
+    private File directory;
+    private volatile boolean persistent = true;
+
+    private long hits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+
+    public static synchronized TrajectoryCache getInstance() {
+        if (instance == null) {
+            instance = new TrajectoryCache();
+        }
+        return instance;
+    }
+
+    public TrajectoryCache() {
+        memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Trajectory> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the trajectory for the given waypoints and config, from memory, from
+     * disk, or by generating it
+     * @param waypoints the waypoints to pass through
+     * @param config the configuration to generate with
+     * @return the trajectory, or null if the waypoints make a malformed spline
+     */
+    public Trajectory get(List<Pose2d> waypoints, TrajectoryConfig config) {
+        String key = key(waypoints, config);
+        if (key == null) {
+            return Trajectory.from(waypoints, config);
+        }
+
+        synchronized (this) {
+            Trajectory trajectory = memory.get(key);
+            if (trajectory != null) {
+                hits++;
+                return trajectory;
+            }
+        }
+
+        // generation and file access happen outside the lock, so one slow
+        // path does not hold up lookups of others
+        Trajectory trajectory = persistent ? load(key) : null;
+        boolean generated = false;
+        if (trajectory == null) {
+            trajectory = Trajectory.from(waypoints, config);
+            if (trajectory == null) {
+                return null;
+            }
+            generated = true;
+            if (persistent) {
+                store(key, trajectory);
+            }
+        }
+
+        synchronized (this) {
+            if (generated) {
+                misses++;
+            } else {
+                diskHits++;
+            }
+            memory.put(key, trajectory);
+        }
+        return trajectory;
+    }
+
+    /**
+     * Hash the waypoints and config into a cache key
+     * @param waypoints the waypoints
+     * @param config the configuration
+     * @return the key as a hex string, or null if the config cannot be cached
+     */
+    public static String key(List<Pose2d> waypoints, TrajectoryConfig config) {
+        var constraints = config.getConstraints();
+        var constraintKeys = new ArrayList<String>(constraints.size());
+        for (var constraint : constraints) {
+            String constraintKey = constraint.getCacheKey();
+            if (constraintKey == null) {
+                return null;
+            }
+            constraintKeys.add(constraintKey);
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + 4 + waypoints.size() * 3 * 8 + 4 * 8 + 1);
+        buf.putInt(GENERATOR_VERSION);
+        buf.putInt(waypoints.size());
+        for (var pose : waypoints) {
+            buf.putDouble(pose.getX());
+            buf.putDouble(pose.getY());
+            buf.putDouble(pose.getRotation().getRadians());
+        }
+        buf.putDouble(config.getMaxVelocity());
+        buf.putDouble(config.getMaxAcceleration());
+        buf.putDouble(config.getStartVelocity());
+        buf.putDouble(config.getEndVelocity());
+        buf.put((byte) (config.isReversed() ? 1 : 0));
+        buf.flip();
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(buf);
+        for (String constraintKey : constraintKeys) {
+            digest.update(constraintKey.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(KEY_SIZE * 2);
+        for (int i = 0; i < KEY_SIZE; ++i) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private Trajectory load(String key) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            return read(file, key);
+        } catch (IOException e) {
+            System.err.println("Unable to read cached trajectory " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(String key, Trajectory trajectory) {
+        File file = fileFor(key);
+        try {
+            write(file, key, trajectory);
+        } catch (IOException e) {
+            System.err.println("Unable to cache trajectory " + file + ": " + e.getMessage());
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(getDirectory(), key + EXTENSION);
+    }
+
+    /**
+     * Write a trajectory file, replacing any existing file only once the new
+     * one is complete
+     * @param file the file to write
+     * @param key the cache key, or null for a trajectory outside the cache
+     * @param trajectory the trajectory
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, String key, Trajectory trajectory) throws IOException {
+        var states = trajectory.getStates();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + states.size() * STATE_SIZE);
+        buf.putInt(MAGIC);
+        buf.putShort(VERSION);
+        putKey(buf, key);
+        buf.putInt(states.size());
+        for (var state : states) {
+            buf.putDouble(state.timeSeconds);
+            buf.putDouble(state.velocityMetersPerSecond);
+            buf.putDouble(state.accelerationMetersPerSecondSq);
+            buf.putDouble(state.poseMeters.getX());
+            buf.putDouble(state.poseMeters.getY());
+            buf.putDouble(state.poseMeters.getRotation().getRadians());
+            buf.putDouble(state.curvatureRadPerMeter);
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        File tmp = new File(dir, file.getName() + ".tmp");
+        Files.write(tmp.toPath(), buf.array());
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read a trajectory file
+     * @param file the file to read
+     * @param key the cache key the file must have been written with, or null to accept any
+     * @return the trajectory
+     * @throws IOException if the file cannot be read or is not a matching trajectory
+     */
+    public static Trajectory read(File file, String key) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            throw new IOException("not a trajectory file");
+        }
+        short version = buf.getShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported trajectory file version " + version);
+        }
+
+        byte[] stored = new byte[KEY_SIZE];
+        buf.get(stored);
+        if (key != null) {
+            ByteBuffer expected = ByteBuffer.allocate(KEY_SIZE);
+            putKey(expected, key);
+            if (!Arrays.equals(stored, expected.array())) {
+                throw new IOException("cache key mismatch");
+            }
+        }
+
+        int count = buf.getInt();
+        if (count < 1 || buf.remaining() != (long) count * STATE_SIZE) {
+            throw new IOException("truncated trajectory file");
+        }
+
+        var states = new ArrayList<TrajectoryState>(count);
+        for (int i = 0; i < count; ++i) {
+            double t = buf.getDouble();
+            double v = buf.getDouble();
+            double a = buf.getDouble();
+            double x = buf.getDouble();
+            double y = buf.getDouble();
+            double heading = buf.getDouble();
+            double curvature = buf.getDouble();
+            states.add(new TrajectoryState(t, v, a, new Pose2d(x, y, new Rotation2d(heading)), curvature));
+        }
+        return new Trajectory(states);
+    }
+
+    private static void putKey(ByteBuffer buf, String key) {
+        for (int i = 0; i < KEY_SIZE; ++i) {
+            buf.put(key == null ? 0 : (byte) Integer.parseInt(key.substring(i * 2, i * 2 + 2), 16));
+        }
+    }
+
+    /**
+     * Directory trajectory files are stored in, by default the trajectories
+     * folder of the deploy directory
+     * @return the directory
+     */
+    public synchronized File getDirectory() {
+        if (directory == null) {
+            directory = new File(Filesystem.getDeployDirectory(), "trajectories");
+        }
+        return directory;
+    }
+
+    public synchronized void setDirectory(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Number of trajectories kept in memory
+     * @param capacity the capacity, 16 by default
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        while (memory.size() > capacity) {
+            memory.remove(memory.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * @param persistent false to keep the cache in memory only
+     */
+    public synchronized void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+}
@@ -37,6 +37,8 @@ public class TrajectoryConfig {
 
 	private boolean reversed;
 
+	private boolean parallel;
+
 	public TrajectoryConfig(LightningDrivetrain drivetrain, boolean reversed, double maxVelocity, double maxAcceleration) {
 		if (maxVelocity > 0) {
 			this.maxVelocity = maxVelocity;
@@ -56,6 +58,19 @@ public class TrajectoryConfig {
 		this.reversed = reversed;
 	}
 
+	/**
+	 * Constructs the trajectory configuration class without a drivetrain, for
+	 * generating trajectories off the robot.
+	 * 
+	 * @param maxVelocity     The max velocity for the trajectory.
+	 * @param maxAcceleration The max acceleration for the trajectory.
+	 */
+	public TrajectoryConfig(double maxVelocity, double maxAcceleration) {
+		this.maxVelocity = maxVelocity;
+		this.maxAcceleration = maxAcceleration;
+		constraints = new ArrayList<>();
+	}
+
 	/**
 	 * Constructs the trajectory configuration class.
 	 * 
@@ -188,4 +203,26 @@ public class TrajectoryConfig {
 		this.reversed = reversed;
 		return this;
 	}
+
+	/**
+	 * Returns whether the spline segments are parameterized in parallel.
+	 * 
+	 * @return whether the trajectory is generated in parallel or not.
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Sets whether the spline segments of the trajectory are parameterized in
+	 * parallel. The generated trajectory is identical either way, this only
+	 * changes how long generation takes for paths with many waypoints.
+	 * 
+	 * @param parallel Whether the trajectory should be generated in parallel.
+	 * @return Instance of the current config object.
+	 */
+	public TrajectoryConfig setParallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
 }
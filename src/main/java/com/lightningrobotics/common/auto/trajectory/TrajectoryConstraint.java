@@ -44,6 +44,62 @@ public interface TrajectoryConstraint {
 	AccelerationLimit getMinMaxAccelerationMetersPerSecondSq(Pose2d poseMeters, double curvatureRadPerMeter,
 			double velocityMetersPerSecond);
 
+	/**
+	 * Writes the minimum and maximum allowable acceleration into a limit
+	 * owned by the caller. The default calls
+	 * {@link #getMinMaxAccelerationMetersPerSecondSq(Pose2d, double, double)},
+	 * override it to avoid allocating a new limit on every call.
+	 * 
+	 * @param poseMeters              The pose at the current point in the
+	 *                                trajectory.
+	 * @param curvatureRadPerMeter    The curvature at the current point in the
+	 *                                trajectory.
+	 * @param velocityMetersPerSecond The speed at the current point in the
+	 *                                trajectory.
+	 * @param limit                   The limit to write the bounds into.
+	 */
+	default void getMinMaxAccelerationMetersPerSecondSq(Pose2d poseMeters, double curvatureRadPerMeter,
+			double velocityMetersPerSecond, AccelerationLimit limit) {
+		var result = getMinMaxAccelerationMetersPerSecondSq(poseMeters, curvatureRadPerMeter, velocityMetersPerSecond);
+		limit.minAccelerationMetersPerSecondSq = result.minAccelerationMetersPerSecondSq;
+		limit.maxAccelerationMetersPerSecondSq = result.maxAccelerationMetersPerSecondSq;
+	}
+
+	/**
+	 * Returns true if the max velocity depends only on the pose and curvature,
+	 * not on the velocity passed in or any other state. Pure limits are
+	 * evaluated once per point of the trajectory instead of on every pass.
+	 * 
+	 * @return If the max velocity is a pure function of the path.
+	 */
+	default boolean isMaxVelocityPure() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the acceleration bounds depend only on the pose and
+	 * curvature, not on the velocity passed in or any other state. Pure
+	 * limits are evaluated once per point of the trajectory instead of on
+	 * every pass.
+	 * 
+	 * @return If the acceleration bounds are a pure function of the path.
+	 */
+	default boolean isAccelerationLimitPure() {
+		return false;
+	}
+
+	/**
+	 * Returns a string identifying this constraint and all of its parameters,
+	 * used by {@link TrajectoryCache} to tell trajectories apart. Two
+	 * constraints with the same key must constrain a trajectory identically.
+	 * 
+	 * @return The cache key, or null if trajectories using this constraint
+	 *         should never be cached.
+	 */
+	default String getCacheKey() {
+		return null;
+	}
+
 	/**
 	 * Represents a minimum and maximum acceleration.
 	 */
@@ -29,8 +29,11 @@ package com.lightningrobotics.common.auto.trajectory;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import com.lightningrobotics.common.auto.trajectory.TrajectoryConstraint.AccelerationLimit;
+
 import edu.wpi.first.math.spline.PoseWithCurvature;
 
 /**
@@ -72,6 +75,7 @@ public final class TrajectoryInterpolater {
 			List<TrajectoryConstraint> constraints, double startVelocityMetersPerSecond,
 			double endVelocityMetersPerSecond, double maxVelocityMetersPerSecond,
 			double maxAccelerationMetersPerSecondSq, boolean reversed) {
+		var compiled = new CompiledConstraints(points, constraints, maxVelocityMetersPerSecond);
 		var constrainedStates = new ArrayList<ConstrainedState>(points.size());
 		var predecessor = new ConstrainedState(points.get(0), 0, startVelocityMetersPerSecond,
 				-maxAccelerationMetersPerSecondSq, maxAccelerationMetersPerSecondSq);
@@ -81,6 +85,7 @@ public final class TrajectoryInterpolater {
 			constrainedStates.add(new ConstrainedState());
 			var constrainedState = constrainedStates.get(i);
 			constrainedState.pose = points.get(i);
+			constrainedState.index = i;
 
 			// Begin constraining based on predecessor.
 			double ds = constrainedState.pose.poseMeters.getTranslation()
@@ -101,15 +106,10 @@ public final class TrajectoryInterpolater {
 
 				// At this point, the constrained state is fully constructed apart from
 				// all the custom-defined user constraints.
-				for (final var constraint : constraints) {
-					constrainedState.maxVelocityMetersPerSecond = Math.min(constrainedState.maxVelocityMetersPerSecond,
-							constraint.getMaxVelocityMetersPerSecond(constrainedState.pose.poseMeters,
-									constrainedState.pose.curvatureRadPerMeter,
-									constrainedState.maxVelocityMetersPerSecond));
-				}
+				compiled.enforceVelocityLimits(constrainedState);
 
 				// Now enforce all acceleration limits.
-				enforceAccelerationLimits(reversed, constraints, constrainedState);
+				compiled.enforceAccelerationLimits(reversed, constrainedState);
 
 				if (ds < 1E-6) {
 					break;
@@ -164,7 +164,7 @@ public final class TrajectoryInterpolater {
 				constrainedState.maxVelocityMetersPerSecond = newMaxVelocity;
 
 				// Check all acceleration constraints with the new max velocity.
-				enforceAccelerationLimits(reversed, constraints, constrainedState);
+				compiled.enforceAccelerationLimits(reversed, constrainedState);
 
 				if (ds > -1E-6) {
 					break;
@@ -234,33 +234,133 @@ public final class TrajectoryInterpolater {
 		return new Trajectory(states);
 	}
 
-	private static void enforceAccelerationLimits(boolean reverse, List<TrajectoryConstraint> constraints,
-			ConstrainedState state) {
+	/**
+	 * The constraints of a single trajectory, compiled against its points.
+	 * Limits that are {@link TrajectoryConstraint#isMaxVelocityPure() pure}
+	 * are evaluated once per point up front instead of on every retry of both
+	 * passes. Consecutive pure velocity limits are fused into one table, so
+	 * every limit is still applied in the order it was given, and all pure
+	 * acceleration limits fold into one pair of bounds per point. The result
+	 * is identical to evaluating every constraint every time.
+	 */
+	private static final class CompiledConstraints {
+		// applied in order: a fused table for a run of pure limits, otherwise the constraint
+		private final double[][] velocityTables;
+		private final TrajectoryConstraint[] velocityConstraints;
+
+		// bounds of every pure acceleration limit, or null if there are none
+		private final double[] minAcceleration;
+		private final double[] maxAcceleration;
+		private final TrajectoryConstraint[] accelerationConstraints;
+
+		private final AccelerationLimit scratch = new AccelerationLimit();
+
+		CompiledConstraints(List<PoseWithCurvature> points, List<TrajectoryConstraint> constraints,
+				double maxVelocityMetersPerSecond) {
+			int n = points.size();
+
+			var tables = new ArrayList<double[]>();
+			var dynamicVelocity = new ArrayList<TrajectoryConstraint>();
+			double[] run = null;
+			for (final var constraint : constraints) {
+				if (!constraint.isMaxVelocityPure()) {
+					run = null;
+					tables.add(null);
+					dynamicVelocity.add(constraint);
+					continue;
+				}
+
+				if (run == null) {
+					run = new double[n];
+					Arrays.fill(run, Double.POSITIVE_INFINITY);
+					tables.add(run);
+					dynamicVelocity.add(null);
+				}
+				for (int i = 0; i < n; i++) {
+					var point = points.get(i);
+					run[i] = Math.min(run[i], constraint.getMaxVelocityMetersPerSecond(point.poseMeters,
+							point.curvatureRadPerMeter, maxVelocityMetersPerSecond));
+				}
+			}
+			velocityTables = tables.toArray(new double[0][]);
+			velocityConstraints = dynamicVelocity.toArray(new TrajectoryConstraint[0]);
+
+			double[] min = null;
+			double[] max = null;
+			var dynamicAcceleration = new ArrayList<TrajectoryConstraint>();
+			for (final var constraint : constraints) {
+				if (!constraint.isAccelerationLimitPure()) {
+					dynamicAcceleration.add(constraint);
+					continue;
+				}
+
+				if (min == null) {
+					min = new double[n];
+					max = new double[n];
+					Arrays.fill(min, Double.NEGATIVE_INFINITY);
+					Arrays.fill(max, Double.POSITIVE_INFINITY);
+				}
+				for (int i = 0; i < n; i++) {
+					var point = points.get(i);
+					constraint.getMinMaxAccelerationMetersPerSecondSq(point.poseMeters, point.curvatureRadPerMeter,
+							maxVelocityMetersPerSecond, scratch);
+					check(constraint, scratch);
+					min[i] = Math.max(min[i], scratch.minAccelerationMetersPerSecondSq);
+					max[i] = Math.min(max[i], scratch.maxAccelerationMetersPerSecondSq);
+				}
+			}
+			minAcceleration = min;
+			maxAcceleration = max;
+			accelerationConstraints = dynamicAcceleration.toArray(new TrajectoryConstraint[0]);
+		}
+
+		void enforceVelocityLimits(ConstrainedState state) {
+			for (int i = 0; i < velocityTables.length; i++) {
+				double[] table = velocityTables[i];
+				double limit = table != null
+						? table[state.index]
+						: velocityConstraints[i].getMaxVelocityMetersPerSecond(state.pose.poseMeters,
+								state.pose.curvatureRadPerMeter, state.maxVelocityMetersPerSecond);
+				state.maxVelocityMetersPerSecond = Math.min(state.maxVelocityMetersPerSecond, limit);
+			}
+		}
+
+		void enforceAccelerationLimits(boolean reverse, ConstrainedState state) {
+			if (minAcceleration != null) {
+				limit(reverse, state, minAcceleration[state.index], maxAcceleration[state.index]);
+			}
 
-		for (final var constraint : constraints) {
 			double factor = reverse ? -1.0 : 1.0;
-			final var minMaxAccel = constraint.getMinMaxAccelerationMetersPerSecondSq(state.pose.poseMeters,
-					state.pose.curvatureRadPerMeter, state.maxVelocityMetersPerSecond * factor);
+			for (final var constraint : accelerationConstraints) {
+				constraint.getMinMaxAccelerationMetersPerSecondSq(state.pose.poseMeters,
+						state.pose.curvatureRadPerMeter, state.maxVelocityMetersPerSecond * factor, scratch);
+				check(constraint, scratch);
+				limit(reverse, state, scratch.minAccelerationMetersPerSecondSq,
+						scratch.maxAccelerationMetersPerSecondSq);
+			}
+		}
+
+		private static void limit(boolean reverse, ConstrainedState state, double min, double max) {
+			state.minAccelerationMetersPerSecondSq = Math.max(state.minAccelerationMetersPerSecondSq,
+					reverse ? -max : min);
 
+			state.maxAccelerationMetersPerSecondSq = Math.min(state.maxAccelerationMetersPerSecondSq,
+					reverse ? -min : max);
+		}
+
+		private static void check(TrajectoryConstraint constraint, AccelerationLimit minMaxAccel) {
 			if (minMaxAccel.minAccelerationMetersPerSecondSq > minMaxAccel.maxAccelerationMetersPerSecondSq) {
 				throw new TrajectoryGenerationException("The constraint's min acceleration "
 						+ "was greater than its max acceleration.\n Offending Constraint: "
 						+ constraint.getClass().getName()
 						+ "\n If the offending constraint was packaged with WPILib, please file a bug" + " report.");
 			}
-
-			state.minAccelerationMetersPerSecondSq = Math.max(state.minAccelerationMetersPerSecondSq,
-					reverse ? -minMaxAccel.maxAccelerationMetersPerSecondSq
-							: minMaxAccel.minAccelerationMetersPerSecondSq);
-
-			state.maxAccelerationMetersPerSecondSq = Math.min(state.maxAccelerationMetersPerSecondSq,
-					reverse ? -minMaxAccel.minAccelerationMetersPerSecondSq
-							: minMaxAccel.maxAccelerationMetersPerSecondSq);
 		}
 	}
 
 	private static class ConstrainedState {
 		PoseWithCurvature pose;
+		int index;
 		double distanceMeters;
 		double maxVelocityMetersPerSecond;
 		double minAccelerationMetersPerSecondSq;
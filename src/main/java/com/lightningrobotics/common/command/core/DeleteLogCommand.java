@@ -4,70 +4,60 @@
 
 package com.lightningrobotics.common.command.core;
 
-import java.io.File;
-import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import com.lightningrobotics.common.logging.LogRetention;
 
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 
 /**
  * Deletes RoboRio log files
+ *
+ * Asks the {@link LogRetention} service for a single pass with the file
+ * limit, leaving its standing limits alone. The files are removed on its
+ * background thread, and the command finishes once that pass has run.
  */
 public class DeleteLogCommand extends CommandBase {
 
   private int filesToKeep;
+  private CompletableFuture<Integer> pass;
 
-  private boolean isDone;
-
-  // Default log directory in Roborio
-  File logFolder = new File("/home/lvuser/log"); 
-  File logFiles[] = logFolder.listFiles();
-  
   /**
    * Commmand that deletes a certain number of log files, starting from the oldest
-   * @param filesToKeep Number of files to keep in the RoboRio
+   * @param filesToKeep Number of files to keep in each log directory
    */
   public DeleteLogCommand(int filesToKeep) {
     this.filesToKeep = filesToKeep;
   }
 
   @Override
-  public void initialize() {}
-
-  @Override
-  public void execute() {
-    SmartDashboard.putNumber("logFileCount", getLogAmount());
-    Arrays.sort(logFiles);
-
-    if (logFiles.length > filesToKeep) {
-      // Calculating number of files to delete
-      int overcount = logFiles.length - filesToKeep;
-      
-      for (int i = 0; i < overcount; i++) {
-        logFiles[i].delete();
-      }
-
-      logFiles = logFolder.listFiles();
-
-      // Renaming log files to "DeleteLogCommands-<i + 1>05-dl.log"
-      for (int i = 0; i < filesToKeep; i++) {
-        logFiles[i].renameTo(new File(String.format("/home/lvuser/log/%s-%05d-dl.log", getClass().getSimpleName(), i + 1)));
-      }
-    }
-    isDone = true;
+  public void initialize() {
+    pass = LogRetention.getInstance().requestPass(filesToKeep);
   }
 
+  /**
+   * Number of log files left by this command's pass, or found by the last
+   * retention pass while this one has not run yet
+   */
   public int getLogAmount() {
-    return logFiles.length;
+    if (pass != null && pass.isDone() && !pass.isCompletedExceptionally()) {
+      return pass.join();
+    }
+    return LogRetention.getInstance().getLogFileCount();
   }
 
   // Called once the command ends or is interrupted.
   @Override
-  public void end(boolean interrupted) {}
+  public void end(boolean interrupted) {
+    if (pass.isDone() && !pass.isCompletedExceptionally()) {
+      SmartDashboard.putNumber("logFileCount", pass.join());
+    }
+  }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return isDone;
+    return pass.isDone();
   }
 }
@@ -11,9 +11,11 @@ import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import edu.wpi.first.wpilibj2.command.Subsystem;
 
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
+import com.lightningrobotics.common.auto.trajectory.PackedTrajectory;
 import com.lightningrobotics.common.auto.trajectory.Trajectory;
 import com.lightningrobotics.common.controller.FeedForwardController;
 import com.lightningrobotics.common.controller.PIDFController;
@@ -48,7 +50,11 @@ import com.lightningrobotics.common.geometry.kinematics.differential.Differentia
 
 public class FollowTrajectory extends CommandBase {
 	private final Timer m_timer = new Timer();
-	private final Trajectory m_trajectory;
+	private final Supplier<Trajectory> m_trajectorySupplier;
+	private Trajectory m_trajectory;
+	private PackedTrajectory.Sampler m_sampler;
+	private final AtomicReference<Trajectory> m_nextTrajectory = new AtomicReference<>();
+	private final PackedTrajectory.State m_sample = new PackedTrajectory.State();
 	private final Supplier<Pose2d> m_pose;
 	private final DiffDriveController m_follower;
 	private final FeedForwardController m_feedforward;
@@ -103,7 +109,52 @@ public class FollowTrajectory extends CommandBase {
 			PIDFController rightController,
 			BiConsumer<Double, Double> outputVolts,
 			Subsystem... requirements) {
-		m_trajectory = requireNonNullParam(trajectory, "trajectory", "FollowTrajectory");
+		this(
+				supply(requireNonNullParam(trajectory, "trajectory", "FollowTrajectory")),
+				pose,
+				controller,
+				feedforward,
+				kinematics,
+				wheelSpeeds,
+				leftController,
+				rightController,
+				outputVolts,
+				requirements);
+	}
+
+	/**
+	 * Constructs a new FollowTrajectory that gets its trajectory when it is
+	 * initialized, so the trajectory can still be generating when the command
+	 * is built.
+	 *
+	 * @param trajectory      Supplies the trajectory to follow, called once
+	 *                        each time the command is initialized.
+	 * @param pose            A function that supplies the robot pose.
+	 * @param controller      The RAMSETE controller used to follow the trajectory.
+	 * @param feedforward     The feedforward to use for the drive.
+	 * @param kinematics      The kinematics for the robot drivetrain.
+	 * @param wheelSpeeds     A function that supplies the speeds of the left and
+	 *                        right sides of the robot drive.
+	 * @param leftController  The PIDFController for the left side of the robot
+	 *                        drive.
+	 * @param rightController The PIDFController for the right side of the robot
+	 *                        drive.
+	 * @param outputVolts     A function that consumes the computed left and right
+	 *                        outputs (in volts) for the robot drive.
+	 * @param requirements    The subsystems to require.
+	 */
+	public FollowTrajectory(
+			Supplier<Trajectory> trajectory,
+			Supplier<Pose2d> pose,
+			DiffDriveController controller,
+			FeedForwardController feedforward,
+			DifferentialKinematics kinematics,
+			Supplier<DifferentialDrivetrainState> wheelSpeeds,
+			PIDFController leftController,
+			PIDFController rightController,
+			BiConsumer<Double, Double> outputVolts,
+			Subsystem... requirements) {
+		m_trajectorySupplier = requireNonNullParam(trajectory, "trajectory", "FollowTrajectory");
 		m_pose = requireNonNullParam(pose, "pose", "FollowTrajectory");
 		m_follower = requireNonNullParam(controller, "controller", "FollowTrajectory");
 		m_feedforward = feedforward;
@@ -116,10 +167,50 @@ public class FollowTrajectory extends CommandBase {
 		addRequirements(requirements);
 	}
 
+	private static Supplier<Trajectory> supply(Trajectory trajectory) {
+		return () -> trajectory;
+	}
+
+	/**
+	 * The trajectory being followed, only available once the command has
+	 * been initialized.
+	 *
+	 * @return The trajectory, or null before the first initialize.
+	 */
+	public Trajectory getTrajectory() {
+		return m_trajectory;
+	}
+
+	/**
+	 * Switches to a new trajectory while the command is running, without
+	 * restarting the timer. Meant for trajectories from
+	 * {@link Trajectory#replan}, which share the time base of the one being
+	 * followed. Can be called from any thread, the switch happens on the next
+	 * execute.
+	 *
+	 * @param trajectory The trajectory to follow from now on.
+	 */
+	public void setTrajectory(Trajectory trajectory) {
+		m_nextTrajectory.set(requireNonNullParam(trajectory, "trajectory", "setTrajectory"));
+	}
+
+	/**
+	 * The time since the command started following its trajectory, to pass
+	 * to {@link Trajectory#replan}.
+	 *
+	 * @return The time in seconds.
+	 */
+	public double getTime() {
+		return m_timer.get();
+	}
+
 	@Override
 	public void initialize() {
+		m_nextTrajectory.set(null);
+		m_trajectory = m_trajectorySupplier.get();
+		m_sampler = m_trajectory.pack().sampler();
 		m_prevTime = -1;
-		var initialState = m_trajectory.sample(0);
+		var initialState = m_sampler.sample(0, m_sample);
 		m_prevSpeeds = (DifferentialDrivetrainState) m_kinematics.inverse(new DrivetrainSpeed(
 				initialState.velocityMetersPerSecond,
 				0,
@@ -133,6 +224,12 @@ public class FollowTrajectory extends CommandBase {
 
 	@Override
 	public void execute() {
+		var next = m_nextTrajectory.getAndSet(null);
+		if (next != null) {
+			m_trajectory = next;
+			m_sampler = next.pack().sampler();
+		}
+
 		double curTime = m_timer.get();
 		double dt = curTime - m_prevTime;
 
@@ -143,7 +240,7 @@ public class FollowTrajectory extends CommandBase {
 		}
 
 		var targetWheelSpeeds = m_kinematics.inverse(
-				m_follower.calculate(m_pose.get(), m_trajectory.sample(curTime)));
+				m_follower.calculate(m_pose.get(), m_sampler.sample(curTime, m_sample)));
 
 		var leftSpeedSetpoint = ((DifferentialDrivetrainState) targetWheelSpeeds).getLeftSpeed();
 		var rightSpeedSetpoint = ((DifferentialDrivetrainState) targetWheelSpeeds).getRightSpeed();
@@ -151,11 +248,14 @@ public class FollowTrajectory extends CommandBase {
 		double leftOutput;
 		double rightOutput;
 
+		// whole milliseconds, so the feedforward reuses its discretized plant
+		double feedforwardDt = Math.max(1, Math.rint(dt * 1000)) / 1000;
+
 		double leftFeedforward = m_feedforward.calculate(
-				leftSpeedSetpoint, (leftSpeedSetpoint - m_prevSpeeds.getLeftSpeed()) / dt);
+				m_prevSpeeds.getLeftSpeed(), leftSpeedSetpoint, feedforwardDt);
 
 		double rightFeedforward = m_feedforward.calculate(
-				rightSpeedSetpoint, (rightSpeedSetpoint - m_prevSpeeds.getRightSpeed()) / dt);
+				m_prevSpeeds.getRightSpeed(), rightSpeedSetpoint, feedforwardDt);
 
 		leftOutput = leftFeedforward
 				+ m_leftController.calculate(m_speeds.get().getLeftSpeed(), leftSpeedSetpoint);
@@ -0,0 +1,188 @@
+package com.lightningrobotics.common.command.drivetrain.swerve;
+
+import static edu.wpi.first.wpilibj.util.ErrorMessages.requireNonNullParam;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.lightningrobotics.common.auto.trajectory.HeadingProfile;
+import com.lightningrobotics.common.auto.trajectory.PackedTrajectory;
+import com.lightningrobotics.common.auto.trajectory.Trajectory;
+import com.lightningrobotics.common.controller.HolonomicDriveController;
+import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * Follows a {@link Trajectory} with a swerve drive, using a
+ * {@link HolonomicDriveController}. The robot's heading is not tied to the
+ * direction of travel, it follows a {@link HeadingProfile} sampled alongside
+ * the trajectory.
+ *
+ * The trajectory and heading profile are resolved and packed when the
+ * command is initialized, each execute only samples them into reused
+ * states. The drivetrain is stopped when the command ends. A replanned
+ * trajectory can be swapped in while it runs with {@link #setTrajectory}.
+ */
+public class FollowTrajectory extends CommandBase {
+
+    private final Timer timer = new Timer();
+    private final Supplier<Trajectory> trajectorySupplier;
+    private final Function<Trajectory, HeadingProfile> headingSupplier;
+    private final Supplier<Pose2d> pose;
+    private final HolonomicDriveController controller;
+    private final Consumer<DrivetrainSpeed> output;
+
+    private Trajectory trajectory;
+    private HeadingProfile heading;
+    private PackedTrajectory.Sampler sampler;
+    private HeadingProfile.Sampler headingSampler;
+    private final PackedTrajectory.State sample = new PackedTrajectory.State();
+    private final HeadingProfile.State headingSample = new HeadingProfile.State();
+    private final AtomicReference<Next> next = new AtomicReference<>();
+
+    /**
+     * A trajectory waiting to be swapped in, with its heading profile or null
+     * to keep the current one
+     */
+    private static class Next {
+        private final Trajectory trajectory;
+        private final HeadingProfile heading;
+
+        Next(Trajectory trajectory, HeadingProfile heading) {
+            this.trajectory = trajectory;
+            this.heading = heading;
+        }
+    }
+
+    /**
+     * Follow a trajectory
+     * @param trajectory the trajectory to follow
+     * @param heading the heading to keep while following it
+     * @param pose supplies the robot's pose on the field
+     * @param controller the trajectory feedback controller
+     * @param output takes the robot relative speed to drive at, like the
+     *               drivetrain's setChassisSpeed
+     * @param requirements the subsystems to require
+     */
+    public FollowTrajectory(Trajectory trajectory, HeadingProfile heading, Supplier<Pose2d> pose,
+            HolonomicDriveController controller, Consumer<DrivetrainSpeed> output, Subsystem... requirements) {
+        this(() -> trajectory, t -> heading, pose, controller, output, requirements);
+    }
+
+    /**
+     * Follow a trajectory that is only needed once the command is
+     * initialized, so it can still be generating when the command is built
+     * @param trajectory supplies the trajectory, called each time the command
+     *                   is initialized
+     * @param heading makes the heading profile for the trajectory
+     * @param pose supplies the robot's pose on the field
+     * @param controller the trajectory feedback controller
+     * @param output takes the robot relative speed to drive at, like the
+     *               drivetrain's setChassisSpeed
+     * @param requirements the subsystems to require
+     */
+    public FollowTrajectory(Supplier<Trajectory> trajectory, Function<Trajectory, HeadingProfile> heading,
+            Supplier<Pose2d> pose, HolonomicDriveController controller, Consumer<DrivetrainSpeed> output,
+            Subsystem... requirements) {
+        this.trajectorySupplier = trajectory;
+        this.headingSupplier = heading;
+        this.pose = pose;
+        this.controller = controller;
+        this.output = output;
+        addRequirements(requirements);
+    }
+
+    /**
+     * @return the trajectory being followed, or null before the first initialize
+     */
+    public Trajectory getTrajectory() {
+        return trajectory;
+    }
+
+    /**
+     * @return the heading profile being followed, or null before the first initialize
+     */
+    public HeadingProfile getHeadingProfile() {
+        return heading;
+    }
+
+    /**
+     * @return the time since the command started, in seconds, to pass to
+     *         {@link Trajectory#replan}
+     */
+    public double getTime() {
+        return timer.get();
+    }
+
+    /**
+     * Switch to a new trajectory while the command is running, without
+     * restarting the timer, keeping the current heading profile. Meant for
+     * trajectories from {@link Trajectory#replan}, which share the time base
+     * of the one being followed. Can be called from any thread, the switch
+     * happens on the next execute.
+     * @param trajectory the trajectory to follow from now on
+     */
+    public void setTrajectory(Trajectory trajectory) {
+        next.set(new Next(requireNonNullParam(trajectory, "trajectory", "setTrajectory"), null));
+    }
+
+    /**
+     * Switch to a new trajectory and heading profile while the command is
+     * running, without restarting the timer, like {@link #setTrajectory(Trajectory)}
+     * @param trajectory the trajectory to follow from now on
+     * @param heading the heading to keep from now on, on the same time base
+     */
+    public void setTrajectory(Trajectory trajectory, HeadingProfile heading) {
+        next.set(new Next(requireNonNullParam(trajectory, "trajectory", "setTrajectory"),
+                requireNonNullParam(heading, "heading", "setTrajectory")));
+    }
+
+    @Override
+    public void initialize() {
+        next.set(null);
+        trajectory = trajectorySupplier.get();
+        heading = headingSupplier.apply(trajectory);
+        sampler = trajectory.pack().sampler();
+        headingSampler = heading.sampler();
+        controller.reset();
+
+        timer.reset();
+        timer.start();
+    }
+
+    @Override
+    public void execute() {
+        var swap = next.getAndSet(null);
+        if (swap != null) {
+            trajectory = swap.trajectory;
+            sampler = swap.trajectory.pack().sampler();
+            if (swap.heading != null) {
+                heading = swap.heading;
+                headingSampler = swap.heading.sampler();
+            }
+        }
+
+        double time = timer.get();
+        output.accept(controller.calculate(pose.get(),
+                sampler.sample(time, sample),
+                headingSampler.sample(time, headingSample)));
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        timer.stop();
+        output.accept(new DrivetrainSpeed());
+    }
+
+    @Override
+    public boolean isFinished() {
+        return timer.hasElapsed(Math.max(trajectory.getTotalTimeSeconds(), heading.getTotalTimeSeconds()));
+    }
+
+}
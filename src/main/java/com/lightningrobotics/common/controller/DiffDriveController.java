@@ -4,7 +4,9 @@
 
 package com.lightningrobotics.common.controller;
 
+import com.lightningrobotics.common.auto.trajectory.PackedTrajectory;
 import com.lightningrobotics.common.auto.trajectory.TrajectoryState;
+import com.lightningrobotics.common.util.LightningMath;
 import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -40,7 +42,9 @@ public class DiffDriveController {
   @SuppressWarnings("MemberName")
   private final double m_zeta;
 
-  private Pose2d m_poseError = new Pose2d();
+  private double m_errorX;
+  private double m_errorY;
+  private double m_errorTheta;
   private Pose2d m_poseTolerance = new Pose2d();
   private boolean m_enabled = true;
 
@@ -72,13 +76,11 @@ public class DiffDriveController {
    * @return True if the pose error is within tolerance of the reference.
    */
   public boolean atReference() {
-    final var eTranslate = m_poseError.getTranslation();
-    final var eRotate = m_poseError.getRotation();
     final var tolTranslate = m_poseTolerance.getTranslation();
     final var tolRotate = m_poseTolerance.getRotation();
-    return Math.abs(eTranslate.getX()) < tolTranslate.getX()
-        && Math.abs(eTranslate.getY()) < tolTranslate.getY()
-        && Math.abs(eRotate.getRadians()) < tolRotate.getRadians();
+    return Math.abs(m_errorX) < tolTranslate.getX()
+        && Math.abs(m_errorY) < tolTranslate.getY()
+        && Math.abs(m_errorTheta) < tolRotate.getRadians();
   }
 
   /**
@@ -108,23 +110,58 @@ public class DiffDriveController {
       Pose2d poseRef,
       double linearVelocityRefMeters,
       double angularVelocityRefRadiansPerSecond) {
+    return calculate(
+        currentPose,
+        poseRef.getX(),
+        poseRef.getY(),
+        poseRef.getRotation().getRadians(),
+        linearVelocityRefMeters,
+        angularVelocityRefRadiansPerSecond);
+  }
+
+  /**
+   * Returns the next output of the Ramsete controller, with the reference pose given as its
+   * components so it does not need to be allocated.
+   *
+   * @param currentPose The current pose.
+   * @param xRefMeters The x of the desired pose.
+   * @param yRefMeters The y of the desired pose.
+   * @param headingRefRadians The heading of the desired pose.
+   * @param linearVelocityRefMeters The desired linear velocity in meters per second.
+   * @param angularVelocityRefRadiansPerSecond The desired angular velocity in radians per second.
+   * @return The next controller output.
+   */
+  @SuppressWarnings("LocalVariableName")
+  public DrivetrainSpeed calculate(
+      Pose2d currentPose,
+      double xRefMeters,
+      double yRefMeters,
+      double headingRefRadians,
+      double linearVelocityRefMeters,
+      double angularVelocityRefRadiansPerSecond) {
     if (!m_enabled) {
       return new DrivetrainSpeed(linearVelocityRefMeters, 0.0, angularVelocityRefRadiansPerSecond); 
     }
 
-    m_poseError = poseRef.relativeTo(currentPose);
+    // reference pose relative to the current pose
+    final var rotation = currentPose.getRotation();
+    final double dX = xRefMeters - currentPose.getX();
+    final double dY = yRefMeters - currentPose.getY();
+    m_errorX = dX * rotation.getCos() + dY * rotation.getSin();
+    m_errorY = -dX * rotation.getSin() + dY * rotation.getCos();
+    m_errorTheta = LightningMath.deltaThetaInRadians(rotation.getRadians(), headingRefRadians);
 
     // Aliases for equation readability
-    final double eX = m_poseError.getX();
-    final double eY = m_poseError.getY();
-    final double eTheta = m_poseError.getRotation().getRadians();
+    final double eX = m_errorX;
+    final double eY = m_errorY;
+    final double eTheta = m_errorTheta;
     final double vRef = linearVelocityRefMeters;
     final double omegaRef = angularVelocityRefRadiansPerSecond;
 
     double k = 2.0 * m_zeta * Math.sqrt(Math.pow(omegaRef, 2) + m_b * Math.pow(vRef, 2));
 
     return new DrivetrainSpeed(
-        vRef * m_poseError.getRotation().getCos() + k * eX,
+        vRef * Math.cos(eTheta) + k * eX,
         0.0,
         omegaRef + k * eTheta + m_b * vRef * sinc(eTheta) * eY);
   }
@@ -148,6 +185,23 @@ public class DiffDriveController {
         desiredState.velocityMetersPerSecond * desiredState.curvatureRadPerMeter);
   }
 
+  /**
+   * Returns the next output of the Ramsete controller.
+   *
+   * @param currentPose The current pose.
+   * @param desiredState The desired state, from a {@link PackedTrajectory.Sampler}.
+   * @return The next controller output.
+   */
+  public DrivetrainSpeed calculate(Pose2d currentPose, PackedTrajectory.State desiredState) {
+    return calculate(
+        currentPose,
+        desiredState.xMeters,
+        desiredState.yMeters,
+        desiredState.headingRadians,
+        desiredState.velocityMetersPerSecond,
+        desiredState.velocityMetersPerSecond * desiredState.curvatureRadPerMeter);
+  }
+
   /**
    * Enables and disables the controller for troubleshooting purposes.
    *
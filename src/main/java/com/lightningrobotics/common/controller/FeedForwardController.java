@@ -4,11 +4,6 @@
 
 package com.lightningrobotics.common.controller;
 
-import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.Nat;
-import edu.wpi.first.math.controller.LinearPlantInversionFeedforward;
-import edu.wpi.first.math.system.plant.LinearSystemId;
-
 /**
  * A helper class that computes feedforward outputs for a simple
  * permanent-magnet DC motor.
@@ -19,6 +14,39 @@ public class FeedForwardController {
     public final double kv;
     public final double ka;
 
+    private static final int CACHE_SIZE = 4;
+
+    // discretizations of the plant for the last few dts, replaced round robin
+    private final Discretization[] cache = new Discretization[CACHE_SIZE];
+    private int nextEntry;
+
+    /**
+     * The velocity plant dv/dt = -kv/ka v + 1/ka u discretized over dt, so
+     * that v[k+1] = a v[k] + b u[k]. Immutable, so a controller can be
+     * shared between threads.
+     */
+    private static final class Discretization {
+        final double dtSeconds;
+        final double a;
+        final double inverseB;
+
+        Discretization(double kv, double ka, double dtSeconds) {
+            this.dtSeconds = dtSeconds;
+            if (ka == 0) {
+                // no inertia, the velocity follows the input immediately
+                a = 0;
+                inverseB = kv;
+            } else if (kv == 0) {
+                // pure inertia, b = dt / ka
+                a = 1;
+                inverseB = ka / dtSeconds;
+            } else {
+                a = Math.exp(-kv / ka * dtSeconds);
+                inverseB = kv / (1 - a);
+            }
+        }
+    }
+
     /**
      * Creates a new SimpleMotorFeedforward with the specified gains. Units of the
      * gain values will
@@ -59,7 +87,10 @@ public class FeedForwardController {
     }
 
     /**
-     * Calculates the feedforward from the gains and setpoints.
+     * Calculates the feedforward from the gains and setpoints, by inverting
+     * the plant discretized over dtSeconds. The discretization is cached for
+     * the last few values of dtSeconds, so with a fixed loop period this does
+     * not allocate.
      *
      * @param currentVelocity The current velocity setpoint.
      * @param nextVelocity    The next velocity setpoint.
@@ -67,13 +98,25 @@ public class FeedForwardController {
      * @return The computed feedforward.
      */
     public double calculate(double currentVelocity, double nextVelocity, double dtSeconds) {
-        var plant = LinearSystemId.identifyVelocitySystem(this.kv, this.ka);
-        var feedforward = new LinearPlantInversionFeedforward<>(plant, dtSeconds);
-
-        var r = Matrix.mat(Nat.N1(), Nat.N1()).fill(currentVelocity);
-        var nextR = Matrix.mat(Nat.N1(), Nat.N1()).fill(nextVelocity);
+        // plant inversion, u = (r[k+1] - a r[k]) / b, in closed form for a single state
+        var d = discretization(dtSeconds);
+        return ks * Math.signum(currentVelocity) + (nextVelocity - d.a * currentVelocity) * d.inverseB;
+    }
 
-        return ks * Math.signum(currentVelocity) + feedforward.calculate(r, nextR).get(0, 0);
+    private Discretization discretization(double dtSeconds) {
+        var entries = cache;
+        for (int i = 0; i < CACHE_SIZE; ++i) {
+            var d = entries[i];
+            if (d != null && d.dtSeconds == dtSeconds) {
+                return d;
+            }
+        }
+        var d = new Discretization(kv, ka, dtSeconds);
+        synchronized (entries) {
+            entries[nextEntry] = d;
+            nextEntry = (nextEntry + 1) % CACHE_SIZE;
+        }
+        return d;
     }
 
     // Rearranging the main equation from the calculate() method yields the
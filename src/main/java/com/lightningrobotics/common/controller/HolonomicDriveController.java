@@ -0,0 +1,134 @@
+package com.lightningrobotics.common.controller;
+
+import com.lightningrobotics.common.auto.trajectory.HeadingProfile;
+import com.lightningrobotics.common.auto.trajectory.PackedTrajectory;
+import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
+import com.lightningrobotics.common.util.LightningMath;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/**
+ * Trajectory feedback for a holonomic drivetrain. The trajectory gives the
+ * field relative velocity to drive at, and x and y controllers correct the
+ * position error. The heading comes from a separate {@link HeadingProfile},
+ * whose angular velocity is fed forward while a theta controller corrects
+ * the heading error.
+ *
+ * The output is relative to the robot, in WPILib's convention of +vy to
+ * the left and omega counter-clockwise in radians per second. Swerve
+ * drivetrains take it with
+ * {@link com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveDrivetrain#setChassisSpeed}.
+ */
+public class HolonomicDriveController {
+
+    private final PIDFController xController;
+    private final PIDFController yController;
+    private final PIDFController thetaController;
+
+    private double errorX;
+    private double errorY;
+    private double errorTheta;
+    private double toleranceTranslation = 0.05;
+    private double toleranceTheta = Math.toRadians(2);
+    private boolean enabled = true;
+
+    /**
+     * Create a holonomic drive controller
+     * @param xController corrects the field x error, in meters, with a
+     *                    velocity in meters per second
+     * @param yController corrects the field y error, in meters, with a
+     *                    velocity in meters per second
+     * @param thetaController corrects the heading error, in radians, with an
+     *                        angular velocity in radians per second
+     */
+    public HolonomicDriveController(PIDFController xController, PIDFController yController,
+            PIDFController thetaController) {
+        this.xController = xController;
+        this.yController = yController;
+        this.thetaController = thetaController;
+        this.thetaController.enableContinuousInput(-Math.PI, Math.PI);
+    }
+
+    /**
+     * Create a holonomic drive controller with proportional gains only
+     * @param kTranslation meters per second per meter of position error
+     * @param kTheta radians per second per radian of heading error
+     */
+    public HolonomicDriveController(double kTranslation, double kTheta) {
+        this(new PIDFController(kTranslation, 0, 0), new PIDFController(kTranslation, 0, 0),
+                new PIDFController(kTheta, 0, 0));
+    }
+
+    /**
+     * Create a holonomic drive controller with gains of 1 m/s per meter and
+     * 2 rad/s per radian, a starting point for tuning
+     */
+    public HolonomicDriveController() {
+        this(1.0, 2.0);
+    }
+
+    /**
+     * Calculate the speed to drive at
+     * @param currentPose where the robot is
+     * @param desiredState where the trajectory is, from a {@link PackedTrajectory.Sampler}
+     * @param desiredHeading the heading the robot should have, from a {@link HeadingProfile.Sampler}
+     * @return the speed, relative to the robot
+     */
+    public DrivetrainSpeed calculate(Pose2d currentPose, PackedTrajectory.State desiredState,
+            HeadingProfile.State desiredHeading) {
+        final var rotation = currentPose.getRotation();
+        errorX = desiredState.xMeters - currentPose.getX();
+        errorY = desiredState.yMeters - currentPose.getY();
+        errorTheta = LightningMath.deltaThetaInRadians(rotation.getRadians(), desiredHeading.headingRadians);
+
+        // the trajectory heading is the direction of travel, not of the robot
+        double vx = desiredState.velocityMetersPerSecond * Math.cos(desiredState.headingRadians);
+        double vy = desiredState.velocityMetersPerSecond * Math.sin(desiredState.headingRadians);
+        double omega = desiredHeading.angularVelocityRadPerSec;
+
+        if (enabled) {
+            vx += xController.calculate(currentPose.getX(), desiredState.xMeters);
+            vy += yController.calculate(currentPose.getY(), desiredState.yMeters);
+            omega += thetaController.calculate(rotation.getRadians(), desiredHeading.headingRadians);
+        }
+
+        // field relative to robot relative
+        return new DrivetrainSpeed(
+                vx * rotation.getCos() + vy * rotation.getSin(),
+                -vx * rotation.getSin() + vy * rotation.getCos(),
+                omega);
+    }
+
+    /**
+     * @return true if the last pose was within tolerance of the reference
+     */
+    public boolean atReference() {
+        return Math.hypot(errorX, errorY) < toleranceTranslation && Math.abs(errorTheta) < toleranceTheta;
+    }
+
+    /**
+     * Set the error considered close enough by {@link #atReference()}
+     * @param translationMeters distance from the reference position
+     * @param thetaRadians difference from the reference heading
+     */
+    public void setTolerance(double translationMeters, double thetaRadians) {
+        toleranceTranslation = translationMeters;
+        toleranceTheta = thetaRadians;
+    }
+
+    /**
+     * Turn the feedback on or off, when off only the trajectory velocity
+     * and heading profile are used
+     * @param enabled whether to correct errors
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void reset() {
+        xController.reset();
+        yController.reset();
+        thetaController.reset();
+    }
+
+}
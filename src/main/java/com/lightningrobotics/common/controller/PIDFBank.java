@@ -0,0 +1,299 @@
+package com.lightningrobotics.common.controller;
+
+import com.lightningrobotics.common.logging.ControllerTelemetry;
+
+/**
+ * A bank of PID controllers calculated together, like the drive and azimuth
+ * controllers of every module of a swerve drive.
+ *
+ * Each channel behaves like a {@link PIDFController}, plus a feedforward
+ * proportional to its setpoint. The gains and state of all channels are kept
+ * in primitive arrays and {@link #calculate(double[], double[], double[])}
+ * works through them in one straight loop, so the JIT can vectorize
+ * it. Continuous input is handled by wrapping the error with a rounding
+ * step, which leaves the error of a channel without continuous input as is.
+ *
+ * Not thread safe.
+ */
+public class PIDFBank {
+
+    private static int instances;
+
+    private final int size;
+
+    private final double[] kp;
+    private final double[] ki;
+    private final double[] kd;
+    private final double[] kf;
+    private final double[] period;
+    private final double[] inversePeriod;
+
+    // range of a continuous input and its inverse, both zero when not continuous
+    private final double[] inputRange;
+    private final double[] inverseInputRange;
+
+    // the integrator range divided by ki, zero when ki is
+    private final double[] minimumIntegral;
+    private final double[] maximumIntegral;
+    private final double[] integralLimits;
+
+    private final double[] positionError;
+    private final double[] velocityError;
+    private final double[] totalError;
+
+    private final double[] setpoint;
+    private final double[] output;
+
+    private final ControllerTelemetry.Block telemetry;
+
+    /**
+     * Create a bank of controllers with no gains and a period of 0.02 seconds
+     * @param channels the number of controllers
+     */
+    public PIDFBank(int channels) {
+        this(channels, 0.02);
+    }
+
+    /**
+     * Create a bank of controllers with no gains
+     * @param channels the number of controllers
+     * @param period the time between calculates, in seconds
+     */
+    public PIDFBank(int channels, double period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Controller period must be a non-zero positive number!");
+        }
+        size = channels;
+        kp = new double[channels];
+        ki = new double[channels];
+        kd = new double[channels];
+        kf = new double[channels];
+        this.period = new double[channels];
+        inversePeriod = new double[channels];
+        inputRange = new double[channels];
+        inverseInputRange = new double[channels];
+        minimumIntegral = new double[channels];
+        maximumIntegral = new double[channels];
+        integralLimits = new double[channels * 2];
+        positionError = new double[channels];
+        velocityError = new double[channels];
+        totalError = new double[channels];
+        setpoint = new double[channels];
+        output = new double[channels];
+
+        instances++;
+        telemetry = ControllerTelemetry.register("PIDFBank " + instances, channels);
+        for (int i = 0; i < channels; ++i) {
+            this.period[i] = period;
+            inversePeriod[i] = 1.0 / period;
+            integralLimits[2 * i] = -1.0;
+            integralLimits[2 * i + 1] = 1.0;
+        }
+    }
+
+    /**
+     * @return the number of channels
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Set a channel's gains
+     * @param channel the channel
+     * @param kp the proportional gain
+     * @param ki the integral gain
+     * @param kd the derivative gain
+     */
+    public void setPID(int channel, double kp, double ki, double kd) {
+        this.kp[channel] = kp;
+        this.ki[channel] = ki;
+        this.kd[channel] = kd;
+        updateIntegralRange(channel);
+    }
+
+    /**
+     * Set a channel's feedforward, added to its output
+     * @param channel the channel
+     * @param kf output per unit of setpoint
+     */
+    public void setF(int channel, double kf) {
+        this.kf[channel] = kf;
+    }
+
+    /**
+     * Set a channel's period
+     * @param channel the channel
+     * @param period the time between calculates, in seconds
+     */
+    public void setPeriod(int channel, double period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Controller period must be a non-zero positive number!");
+        }
+        this.period[channel] = period;
+        this.inversePeriod[channel] = 1.0 / period;
+    }
+
+    /**
+     * Treat a channel's minimum and maximum input as the same point, and
+     * take the shortest way to the setpoint
+     * @param channel the channel
+     * @param minimumInput the minimum value expected from the input
+     * @param maximumInput the maximum value expected from the input
+     */
+    public void enableContinuousInput(int channel, double minimumInput, double maximumInput) {
+        inputRange[channel] = maximumInput - minimumInput;
+        inverseInputRange[channel] = 1.0 / (maximumInput - minimumInput);
+    }
+
+    public void disableContinuousInput(int channel) {
+        inputRange[channel] = 0;
+        inverseInputRange[channel] = 0;
+    }
+
+    /**
+     * Set the limits of a channel's integrator, applied to the integral term
+     * @param channel the channel
+     * @param minimumIntegral the lowest the integral term may go
+     * @param maximumIntegral the highest the integral term may go
+     */
+    public void setIntegratorRange(int channel, double minimumIntegral, double maximumIntegral) {
+        integralLimits[2 * channel] = minimumIntegral;
+        integralLimits[2 * channel + 1] = maximumIntegral;
+        updateIntegralRange(channel);
+    }
+
+    private void updateIntegralRange(int channel) {
+        double k = ki[channel];
+        minimumIntegral[channel] = k != 0 ? integralLimits[2 * channel] / k : 0;
+        maximumIntegral[channel] = k != 0 ? integralLimits[2 * channel + 1] / k : 0;
+    }
+
+    /**
+     * Bind a controller to a channel. The controller's gains, period,
+     * continuous input and integrator range are copied into the channel, and
+     * copied again whenever they are changed on the controller, like by a
+     * dashboard tuner. The controller's calculate runs the channel, so both
+     * share one integrator.
+     * @param channel the channel
+     * @param controller the controller to bind
+     */
+    public void set(int channel, PIDFController controller) {
+        copy(channel, controller);
+        setName(channel, controller.getName());
+        controller.bind(this, channel);
+    }
+
+    // called again by a bound controller when its configuration changes
+    void copy(int channel, PIDFController controller) {
+        setPeriod(channel, controller.getPeriod());
+        if (controller.isContinuousInputEnabled()) {
+            enableContinuousInput(channel, controller.getMinimumInput(), controller.getMaximumInput());
+        } else {
+            disableContinuousInput(channel);
+        }
+        integralLimits[2 * channel] = controller.getMinimumIntegral();
+        integralLimits[2 * channel + 1] = controller.getMaximumIntegral();
+        setPID(channel, controller.getP(), controller.getI(), controller.getD());
+    }
+
+    /**
+     * Name a channel for {@link ControllerTelemetry}
+     * @param channel the channel
+     * @param name the name, unique among controllers
+     */
+    public void setName(int channel, String name) {
+        telemetry.get(channel).setName(name);
+    }
+
+    /**
+     * Calculate the output of every channel
+     * @param measurements the measurement of each channel
+     * @param setpoints the setpoint of each channel
+     * @param outputs written with the output of each channel, may be null
+     * @return outputs, or the bank's own output array if that was null,
+     *         which is overwritten by the next calculate
+     */
+    public double[] calculate(double[] measurements, double[] setpoints, double[] outputs) {
+        if (outputs == null) {
+            outputs = output;
+        }
+        final int n = size;
+        for (int i = 0; i < n; ++i) {
+            double error = setpoints[i] - measurements[i];
+            // wraps into [-range / 2, range / 2], a range of zero leaves it alone
+            error -= inputRange[i] * Math.rint(error * inverseInputRange[i]);
+
+            double velocity = (error - positionError[i]) * inversePeriod[i];
+            // compares rather than Math.min and max, which are slower for doubles
+            double total = totalError[i] + error * period[i];
+            total = total < minimumIntegral[i] ? minimumIntegral[i] : total;
+            total = total > maximumIntegral[i] ? maximumIntegral[i] : total;
+
+            positionError[i] = error;
+            velocityError[i] = velocity;
+            totalError[i] = total;
+            outputs[i] = kp[i] * error + ki[i] * total + kd[i] * velocity + kf[i] * setpoints[i];
+        }
+
+        System.arraycopy(setpoints, 0, setpoint, 0, n);
+        telemetry.record(setpoints, measurements, positionError, outputs);
+        return outputs;
+    }
+
+    /**
+     * Calculate the output of a single channel, leaving the others as they are
+     * @param channel the channel
+     * @param measurement the measurement
+     * @param setpoint the setpoint
+     * @return the channel's output
+     */
+    public double calculate(int channel, double measurement, double setpoint) {
+        double error = setpoint - measurement;
+        error -= inputRange[channel] * Math.rint(error * inverseInputRange[channel]);
+
+        velocityError[channel] = (error - positionError[channel]) * inversePeriod[channel];
+        double total = totalError[channel] + error * period[channel];
+        total = total < minimumIntegral[channel] ? minimumIntegral[channel] : total;
+        totalError[channel] = total > maximumIntegral[channel] ? maximumIntegral[channel] : total;
+        positionError[channel] = error;
+        this.setpoint[channel] = setpoint;
+
+        double out = kp[channel] * error + ki[channel] * totalError[channel] + kd[channel] * velocityError[channel]
+                + kf[channel] * setpoint;
+        output[channel] = out;
+        telemetry.get(channel).record(setpoint, measurement, error, out);
+        return out;
+    }
+
+    public double getPositionError(int channel) {
+        return positionError[channel];
+    }
+
+    public double getVelocityError(int channel) {
+        return velocityError[channel];
+    }
+
+    public double getSetpoint(int channel) {
+        return setpoint[channel];
+    }
+
+    /**
+     * Resets the previous error and the integral term of every channel
+     */
+    public void reset() {
+        for (int i = 0; i < size; ++i) {
+            reset(i);
+        }
+    }
+
+    /**
+     * Resets the previous error and the integral term of a channel
+     * @param channel the channel
+     */
+    public void reset(int channel) {
+        positionError[channel] = 0;
+        totalError[channel] = 0;
+    }
+
+}
@@ -4,13 +4,14 @@
 
 package com.lightningrobotics.common.controller;
 
+import com.lightningrobotics.common.logging.ControllerTelemetry;
+
 import edu.wpi.first.math.MathSharedStore;
 import edu.wpi.first.math.MathUsageId;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.util.sendable.SendableRegistry;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 /** Implements a PID control loop. */
 public class PIDFController implements Sendable, AutoCloseable {
@@ -56,6 +57,12 @@ public class PIDFController implements Sendable, AutoCloseable {
   private double m_setpoint;
   private double m_measurement;
 
+  private final ControllerTelemetry.Slot m_telemetry;
+
+  // the bank channel this controller is bound to, if any
+  private PIDFBank m_bank;
+  private int m_channel;
+
   /**
    * Allocates a PIDController with the given constants for kp, ki, and kd and a default period of
    * 0.02 seconds.
@@ -88,10 +95,29 @@ public class PIDFController implements Sendable, AutoCloseable {
 
     instances++;
     SendableRegistry.addLW(this, "PIDController", instances);
+    m_telemetry = ControllerTelemetry.register("PIDController " + instances);
 
     MathSharedStore.reportUsage(MathUsageId.kController_PIDController2, instances);
   }
 
+  /**
+   * Sets the name this controller's values are published under by {@link ControllerTelemetry}.
+   *
+   * @param name The name, unique among controllers.
+   */
+  public void setName(String name) {
+    m_telemetry.setName(name);
+  }
+
+  /**
+   * Returns the name this controller's values are published under.
+   *
+   * @return The name.
+   */
+  public String getName() {
+    return m_telemetry.getName();
+  }
+
   @Override
   public void close() {
     SendableRegistry.remove(this);
@@ -110,6 +136,7 @@ public class PIDFController implements Sendable, AutoCloseable {
     m_kp = kp;
     m_ki = ki;
     m_kd = kd;
+    writeThrough();
   }
 
   /**
@@ -119,6 +146,7 @@ public class PIDFController implements Sendable, AutoCloseable {
    */
   public void setP(double kp) {
     m_kp = kp;
+    writeThrough();
   }
 
   /**
@@ -128,6 +156,7 @@ public class PIDFController implements Sendable, AutoCloseable {
    */
   public void setI(double ki) {
     m_ki = ki;
+    writeThrough();
   }
 
   /**
@@ -137,6 +166,7 @@ public class PIDFController implements Sendable, AutoCloseable {
    */
   public void setD(double kd) {
     m_kd = kd;
+    writeThrough();
   }
 
   /**
@@ -228,11 +258,13 @@ public class PIDFController implements Sendable, AutoCloseable {
     m_continuous = true;
     m_minimumInput = minimumInput;
     m_maximumInput = maximumInput;
+    writeThrough();
   }
 
   /** Disables continuous input. */
   public void disableContinuousInput() {
     m_continuous = false;
+    writeThrough();
   }
 
   /**
@@ -244,6 +276,35 @@ public class PIDFController implements Sendable, AutoCloseable {
     return m_continuous;
   }
 
+  // called by PIDFBank.set, from then on the channel follows this controller
+  void bind(PIDFBank bank, int channel) {
+    m_bank = bank;
+    m_channel = channel;
+  }
+
+  private void writeThrough() {
+    if (m_bank != null) {
+      m_bank.copy(m_channel, this);
+    }
+  }
+
+  // for PIDFBank to copy a controller's configuration
+  double getMinimumInput() {
+    return m_minimumInput;
+  }
+
+  double getMaximumInput() {
+    return m_maximumInput;
+  }
+
+  double getMinimumIntegral() {
+    return m_minimumIntegral;
+  }
+
+  double getMaximumIntegral() {
+    return m_maximumIntegral;
+  }
+
   /**
    * Sets the minimum and maximum values for the integrator.
    *
@@ -256,6 +317,7 @@ public class PIDFController implements Sendable, AutoCloseable {
   public void setIntegratorRange(double minimumIntegral, double maximumIntegral) {
     m_minimumIntegral = minimumIntegral;
     m_maximumIntegral = maximumIntegral;
+    writeThrough();
   }
 
   /**
@@ -319,6 +381,14 @@ public class PIDFController implements Sendable, AutoCloseable {
     m_measurement = measurement;
     m_prevError = m_positionError;
 
+    if (m_bank != null) {
+      // run the bound channel, so the bank and this controller share one integrator
+      double output = m_bank.calculate(m_channel, measurement, m_setpoint);
+      m_positionError = m_bank.getPositionError(m_channel);
+      m_velocityError = m_bank.getVelocityError(m_channel);
+      return output;
+    }
+
     if (m_continuous) {
       double errorBound = (m_maximumInput - m_minimumInput) / 2.0;
       m_positionError = MathUtil.inputModulus(m_setpoint - m_measurement, -errorBound, errorBound);
@@ -336,16 +406,18 @@ public class PIDFController implements Sendable, AutoCloseable {
               m_maximumIntegral / m_ki);
     }
 
-    SmartDashboard.putNumber("PID output",  m_kp * m_positionError + m_ki * m_totalError + m_kd * m_velocityError);
-    SmartDashboard.putNumber("PID setpoint", m_setpoint);
-
-    return m_kp * m_positionError + m_ki * m_totalError + m_kd * m_velocityError;
+    double output = m_kp * m_positionError + m_ki * m_totalError + m_kd * m_velocityError;
+    m_telemetry.record(m_setpoint, m_measurement, m_positionError, output);
+    return output;
   }
 
   /** Resets the previous error and the integral term. */
   public void reset() {
     m_prevError = 0;
     m_totalError = 0;
+    if (m_bank != null) {
+      m_bank.reset(m_channel);
+    }
   }
 
   @Override
@@ -4,109 +4,345 @@ import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
 import com.lightningrobotics.common.geometry.kinematics.DrivetrainState;
 import com.lightningrobotics.common.geometry.kinematics.LightningKinematics;
 import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveGains;
-import com.lightningrobotics.common.util.LightningMath;
 
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
 
+/**
+ * Kinematics for a swerve drive with any number of modules, at any
+ * positions.
+ *
+ * A module at (x, y) moves at (vx - omega y, vy + omega x). The matrix
+ * taking a speed to every module's velocity, and its least squares inverse
+ * taking module velocities back to a speed, are worked out once when the
+ * kinematics is created. The primitive {@link #inverse(double, double,
+ * double, double[], double[])} and {@link #forward(double[], double[],
+ * double[])} write into arrays owned by the caller and allocate nothing.
+ *
+ * Commanding a speed for a whole loop as if it were constant makes a robot
+ * that translates and rotates at once drift, since it really moves along an
+ * arc. {@link #discretize} corrects the speed for that, and the second
+ * order {@link #inverse(double, double, double, double, double, double,
+ * double[], double[], double[])} also gives how fast each module has to
+ * steer, to feed forward to the azimuth controllers.
+ *
+ * Swerve speeds in this library are +x forward, +y to the right and +omega
+ * clockwise. WPILib, and the trajectories, use +y to the left and
+ * counter-clockwise omega in radians per second.
+ * {@link #fromChassisSpeed} and {@link #toChassisSpeed} convert between the
+ * two.
+ */
 public class SwerveKinematics implements LightningKinematics {
 
-    private SwerveGains gains;
+    private final SwerveGains gains;
+    private final double maxSpeed;
 
-    private double W;
-    private double L;
-    private double R;
+    private final int modules;
 
+    // radians the chassis turns per second, for each unit of omega
+    private final double radiansPerOmega;
+
+    // module velocity = inverse * (vx, vy, omega), two rows per module
+    private final double[] inverseMatrix;
+
+    // (vx, vy, omega) = forward * module velocities, three rows of 2n
+    private final double[] forwardMatrix;
+
+    // buffers for the allocating LightningKinematics methods
+    private final double[] speeds;
+    private final double[] angles;
+    private final double[] chassis = new double[3];
+
+    /**
+     * Four module kinematics with the layout and units this class has always
+     * used, modules in the order of
+     * {@link com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveDrivetrain.Modules Modules}.
+     * Module speeds are limited to the gains' max speed.
+     * @param gains the drivetrain gains
+     */
     public SwerveKinematics(SwerveGains gains) {
-        this.gains = gains;
-        this.W = gains.getWidth();
-        this.L = gains.getLength();
-        this.R = Math.sqrt(W * W + L * L);
+        this(gains, 0, 2 / Math.hypot(gains.getWidth(), gains.getLength()),
+                legacyLayout(gains.getWidth(), gains.getLength()));
     }
 
-    @Override
-    public DrivetrainState inverse(DrivetrainSpeed speed) {
-
-        var FWD = speed.vx;
-        var STR = speed.vy;
-        var RCW = speed.omega;
-
-        var A = STR - RCW * (L/R);
-        var B = STR + RCW * (L/R);
-        var C = FWD - RCW * (W/R);
-        var D = FWD + RCW * (W/R);
-
-        var FR_Speed = Math.sqrt(B*B + C*C);
-        var FL_Speed = Math.sqrt(B*B + D*D);
-        var RL_Speed = Math.sqrt(A*A + D*D);
-        var RR_Speed = Math.sqrt(A*A + C*C);
-
-        var FR_Angle = Math.atan2(B, C);
-        var FL_Angle = Math.atan2(B, D);
-        var RL_Angle = Math.atan2(A, D);
-        var RR_Angle = Math.atan2(A, C);
-
-        var maxWheelSpeed = LightningMath.max(FR_Speed, FL_Speed, RL_Speed, RR_Speed);
-
-        if(maxWheelSpeed > gains.getMaxSpeed()) {
-            FR_Speed = (FR_Speed / maxWheelSpeed) * gains.getMaxSpeed();
-            FL_Speed = (FL_Speed / maxWheelSpeed) * gains.getMaxSpeed();
-            RL_Speed = (RL_Speed / maxWheelSpeed) * gains.getMaxSpeed();
-            RR_Speed = (RR_Speed / maxWheelSpeed) * gains.getMaxSpeed();
+    /**
+     * Kinematics for modules at the given positions
+     * @param maxSpeed the fastest a module can drive, module speeds are
+     *                 scaled down together to stay under it
+     * @param modulePositions the position of each module relative to the
+     *                        center of rotation, +x forward and +y to the
+     *                        right, at least two
+     */
+    public SwerveKinematics(double maxSpeed, Translation2d... modulePositions) {
+        this(null, maxSpeed, 1, modulePositions);
+    }
+
+    private SwerveKinematics(SwerveGains gains, double maxSpeed, double radiansPerOmega, Translation2d[] positions) {
+        if (positions.length < 2) {
+            throw new IllegalArgumentException("swerve kinematics needs at least two modules");
         }
+        this.gains = gains;
+        this.maxSpeed = maxSpeed;
+        this.radiansPerOmega = radiansPerOmega;
+        this.modules = positions.length;
+        this.speeds = new double[modules];
+        this.angles = new double[modules];
 
-        return new SwerveDrivetrainState(new SwerveModuleState[]{
-            new SwerveModuleState(FL_Speed, new Rotation2d(FL_Angle)),
-            new SwerveModuleState(FR_Speed, new Rotation2d(FR_Angle)),
-            new SwerveModuleState(RL_Speed, new Rotation2d(RL_Angle)),
-            new SwerveModuleState(RR_Speed, new Rotation2d(RR_Angle))
-        });
+        final int rows = 2 * modules;
+        inverseMatrix = new double[rows * 3];
+        for (int i = 0; i < modules; ++i) {
+            double x = positions[i].getX();
+            double y = positions[i].getY();
+            set(inverseMatrix, 2 * i, 1, 0, -y);
+            set(inverseMatrix, 2 * i + 1, 0, 1, x);
+        }
 
+        // forward = (A^T A)^-1 A^T, A^T A is 3x3 and symmetric
+        double[] ata = new double[9];
+        for (int r = 0; r < 3; ++r) {
+            for (int c = 0; c < 3; ++c) {
+                double sum = 0;
+                for (int k = 0; k < rows; ++k) {
+                    sum += inverseMatrix[k * 3 + r] * inverseMatrix[k * 3 + c];
+                }
+                ata[r * 3 + c] = sum;
+            }
+        }
+        double[] ataInverse = invert3x3(ata);
+
+        forwardMatrix = new double[3 * rows];
+        for (int r = 0; r < 3; ++r) {
+            for (int k = 0; k < rows; ++k) {
+                double sum = 0;
+                for (int c = 0; c < 3; ++c) {
+                    sum += ataInverse[r * 3 + c] * inverseMatrix[k * 3 + c];
+                }
+                forwardMatrix[r * rows + k] = sum;
+            }
+        }
     }
 
-    @Override
-    public DrivetrainSpeed forward(DrivetrainState state) {
+    // front left, front right, rear left and rear right, scaled so the
+    // wheels move at omega around the center
+    private static Translation2d[] legacyLayout(double width, double length) {
+        double r = Math.sqrt(width * width + length * length);
+        double x = length / r;
+        double y = width / r;
+        return new Translation2d[] {
+            new Translation2d(x, -y),
+            new Translation2d(x, y),
+            new Translation2d(-x, -y),
+            new Translation2d(-x, y)
+        };
+    }
 
-        var swerveState = (SwerveDrivetrainState) state;
-        var states = swerveState.getStates();
+    private static void set(double[] matrix, int row, double a, double b, double c) {
+        matrix[row * 3] = a;
+        matrix[row * 3 + 1] = b;
+        matrix[row * 3 + 2] = c;
+    }
 
-        var FL = states[0];
-        var FR = states[1];
-        var RL = states[2];
-        var RR = states[3];
+    private static double[] invert3x3(double[] m) {
+        double c00 = m[4] * m[8] - m[5] * m[7];
+        double c01 = m[5] * m[6] - m[3] * m[8];
+        double c02 = m[3] * m[7] - m[4] * m[6];
+        double determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+        if (Math.abs(determinant) < 1E-12) {
+            throw new IllegalArgumentException("swerve module positions must not all be the same");
+        }
+        double d = 1.0 / determinant;
+        return new double[] {
+            c00 * d, (m[2] * m[7] - m[1] * m[8]) * d, (m[1] * m[5] - m[2] * m[4]) * d,
+            c01 * d, (m[0] * m[8] - m[2] * m[6]) * d, (m[2] * m[3] - m[0] * m[5]) * d,
+            c02 * d, (m[1] * m[6] - m[0] * m[7]) * d, (m[0] * m[4] - m[1] * m[3]) * d
+        };
+    }
 
-        var BFL = FL.angle.getSin() * FL.velocity;
-        var DFL = FL.angle.getCos() * FL.velocity;
+    /**
+     * @return the number of modules
+     */
+    public int getModuleCount() {
+        return modules;
+    }
 
-        var BFR = FR.angle.getSin() * FR.velocity;
-        var CFR = FR.angle.getCos() * FR.velocity;
+    /**
+     * The kinematics made from {@link SwerveGains} take omega as the speed
+     * the wheels turn the chassis at, not as an angular velocity
+     * @return radians per second the chassis turns for each unit of omega
+     */
+    public double getRadiansPerOmega() {
+        return radiansPerOmega;
+    }
 
-        var ARL = RL.angle.getSin() * RL.velocity;
-        var DRL = RL.angle.getCos() * RL.velocity;
+    private double getMaxSpeed() {
+        return gains != null ? gains.getMaxSpeed() : maxSpeed;
+    }
 
-        var ARR = RR.angle.getSin() * RR.velocity;
-        var CRL = RR.angle.getCos() * RR.velocity;
+    /**
+     * Convert a speed in WPILib's convention to this kinematics' speed
+     * @param vx velocity forward
+     * @param vy velocity to the left
+     * @param omegaRadiansPerSecond counter-clockwise angular velocity
+     * @param speed written with vx, vy and omega to command
+     */
+    public void fromChassisSpeed(double vx, double vy, double omegaRadiansPerSecond, double[] speed) {
+        speed[0] = vx;
+        speed[1] = -vy;
+        speed[2] = -omegaRadiansPerSecond / radiansPerOmega;
+    }
+
+    /**
+     * Convert this kinematics' speed to WPILib's convention
+     * @param speed vx, vy and omega, like from {@link #forward(double[], double[], double[])}
+     * @param chassisSpeed written with the velocity forward, the velocity to
+     *                     the left and the counter-clockwise angular velocity
+     *                     in radians per second, may be the same array
+     */
+    public void toChassisSpeed(double[] speed, double[] chassisSpeed) {
+        chassisSpeed[0] = speed[0];
+        chassisSpeed[1] = -speed[1];
+        chassisSpeed[2] = -speed[2] * radiansPerOmega;
+    }
+
+    /**
+     * Calculate every module's speed and angle for a drivetrain speed
+     * @param vx velocity in the x direction
+     * @param vy velocity in the y direction
+     * @param omega rotational velocity
+     * @param moduleSpeeds written with the speed of each module
+     * @param moduleAngles written with the angle of each module, in radians
+     */
+    public void inverse(double vx, double vy, double omega, double[] moduleSpeeds, double[] moduleAngles) {
+        inverseScaled(vx, vy, omega, moduleSpeeds, moduleAngles);
+    }
 
-        var A = (ARR + ARL) / 2d;
-        var B = (BFL + BFR) / 2d;
-        var C = (CFR + CRL) / 2d;
-        var D = (DFL + DRL) / 2d;
+    /**
+     * Calculate every module's speed, angle and steering velocity for a
+     * drivetrain speed that is changing
+     * @param vx velocity in the x direction
+     * @param vy velocity in the y direction
+     * @param omega rotational velocity
+     * @param ax acceleration in the x direction
+     * @param ay acceleration in the y direction
+     * @param alpha rotational acceleration
+     * @param moduleSpeeds written with the speed of each module
+     * @param moduleAngles written with the angle of each module, in radians
+     * @param moduleAngularVelocities written with how fast each module's
+     *                                angle is changing, in radians per second
+     */
+    public void inverse(double vx, double vy, double omega, double ax, double ay, double alpha,
+            double[] moduleSpeeds, double[] moduleAngles, double[] moduleAngularVelocities) {
+        // slowing the modules down slows down their steering as much
+        double scale = inverseScaled(vx, vy, omega, moduleSpeeds, moduleAngles);
 
-        var ROT1 = (B - A) / L;
-        var ROT2 = (C - D) / W;
-        var ROT = (ROT1 + ROT2) / 2d;
+        final double[] m = inverseMatrix;
+        for (int i = 0; i < modules; ++i) {
+            int row = 6 * i;
+            double x = m[row] * vx + m[row + 1] * vy + m[row + 2] * omega;
+            double y = m[row + 3] * vx + m[row + 4] * vy + m[row + 5] * omega;
+            double dx = m[row] * ax + m[row + 1] * ay + m[row + 2] * alpha;
+            double dy = m[row + 3] * ax + m[row + 4] * ay + m[row + 5] * alpha;
+            // d/dt atan2(y, x), undefined for a module standing still
+            double squared = x * x + y * y;
+            moduleAngularVelocities[i] = squared > 1E-9 ? scale * (x * dy - y * dx) / squared : 0;
+        }
+    }
 
-        var FWD1 = ROT * (L / 2d) + A;
-        var FWD2 = -ROT * (L / 2d) + B;
-        var FWD = (FWD1 + FWD2) / 2d;
+    // returns how much the module speeds were scaled down by
+    private double inverseScaled(double vx, double vy, double omega, double[] moduleSpeeds, double[] moduleAngles) {
+        final double[] m = inverseMatrix;
+        double max = 0;
+        for (int i = 0; i < modules; ++i) {
+            int row = 6 * i;
+            double x = m[row] * vx + m[row + 1] * vy + m[row + 2] * omega;
+            double y = m[row + 3] * vx + m[row + 4] * vy + m[row + 5] * omega;
+            double speed = Math.sqrt(x * x + y * y);
+            moduleSpeeds[i] = speed;
+            moduleAngles[i] = Math.atan2(y, x);
+            max = Math.max(max, speed);
+        }
+
+        double limit = getMaxSpeed();
+        if (max > limit) {
+            double scale = limit / max;
+            for (int i = 0; i < modules; ++i) {
+                moduleSpeeds[i] *= scale;
+            }
+            return scale;
+        }
+        return 1;
+    }
 
-        var STR1 = ROT * (W / 2d) + C;
-        var STR2 = -ROT * (W / 2d) + D;
-        var STR = (STR1 + STR2) / 2d;
+    /**
+     * Correct a speed for being held over a whole loop. A robot holding a
+     * speed moves along an arc, so this finds the speed whose arc ends where
+     * moving straight at the given speed, and turning, would over the
+     * loop. This is the pose exponential, taken backwards.
+     * @param vx velocity in the x direction
+     * @param vy velocity in the y direction
+     * @param omega rotational velocity
+     * @param dtSeconds the loop period
+     * @param speed written with the corrected vx, vy and omega
+     */
+    public void discretize(double vx, double vy, double omega, double dtSeconds, double[] speed) {
+        double halfTheta = 0.5 * omega * radiansPerOmega * dtSeconds;
+        double cosMinusOne = Math.cos(2 * halfTheta) - 1;
+        double k;
+        if (Math.abs(cosMinusOne) < 1E-9) {
+            k = 1 - halfTheta * halfTheta / 3;
+        } else {
+            k = -halfTheta * Math.sin(2 * halfTheta) / cosMinusOne;
+        }
+        speed[0] = vx * k + vy * halfTheta;
+        speed[1] = -vx * halfTheta + vy * k;
+        speed[2] = omega;
+    }
 
-        var speed = new DrivetrainSpeed(FWD, STR, ROT);
+    /**
+     * Calculate the drivetrain speed that best matches the modules, in the
+     * least squares sense
+     * @param moduleSpeeds the speed of each module
+     * @param moduleAngles the angle of each module, in radians
+     * @param speed written with vx, vy and omega
+     */
+    public void forward(double[] moduleSpeeds, double[] moduleAngles, double[] speed) {
+        final double[] f = forwardMatrix;
+        final int rows = 2 * modules;
+        double vx = 0;
+        double vy = 0;
+        double omega = 0;
+        for (int i = 0; i < modules; ++i) {
+            double x = moduleSpeeds[i] * Math.cos(moduleAngles[i]);
+            double y = moduleSpeeds[i] * Math.sin(moduleAngles[i]);
+            int k = 2 * i;
+            vx += f[k] * x + f[k + 1] * y;
+            vy += f[rows + k] * x + f[rows + k + 1] * y;
+            omega += f[2 * rows + k] * x + f[2 * rows + k + 1] * y;
+        }
+        speed[0] = vx;
+        speed[1] = vy;
+        speed[2] = omega;
+    }
 
-        return speed;
+    @Override
+    public synchronized DrivetrainState inverse(DrivetrainSpeed speed) {
+        inverse(speed.vx, speed.vy, speed.omega, speeds, angles);
+        var states = new SwerveModuleState[modules];
+        for (int i = 0; i < modules; ++i) {
+            states[i] = new SwerveModuleState(speeds[i], new Rotation2d(angles[i]));
+        }
+        return new SwerveDrivetrainState(states);
+    }
 
+    @Override
+    public synchronized DrivetrainSpeed forward(DrivetrainState state) {
+        var states = ((SwerveDrivetrainState) state).getStates();
+        for (int i = 0; i < modules; ++i) {
+            speeds[i] = states[i].velocity;
+            angles[i] = states[i].angle.getRadians();
+        }
+        forward(speeds, angles, chassis);
+        return new DrivetrainSpeed(chassis[0], chassis[1], chassis[2]);
     }
 
 }
@@ -0,0 +1,79 @@
+package com.lightningrobotics.common.geometry.kinematics.swerve;
+
+import com.lightningrobotics.common.util.LightningMath;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Tracks a robot's pose on the field by adding up how far it moved each
+ * loop, along the arc it drove rather than in a straight line.
+ *
+ * Works in WPILib's convention, +y to the left and counter-clockwise
+ * headings, like the trajectories. Swerve speeds are converted with
+ * {@link SwerveKinematics#toChassisSpeed(double[], double[])} first.
+ */
+public class SwerveOdometry {
+
+    private double x;
+    private double y;
+    private double heading;
+
+    /**
+     * Move the pose by how far the robot drove in one loop
+     * @param forward distance driven forward, relative to the robot
+     * @param left distance driven to the left, relative to the robot
+     * @param dTheta counter-clockwise heading change, in radians
+     */
+    public void update(double forward, double left, double dTheta) {
+        double s;
+        double c;
+        if (Math.abs(dTheta) < 1E-9) {
+            s = 1.0 - dTheta * dTheta / 6.0;
+            c = 0.5 * dTheta;
+        } else {
+            s = Math.sin(dTheta) / dTheta;
+            c = (1 - Math.cos(dTheta)) / dTheta;
+        }
+        double arcForward = forward * s - left * c;
+        double arcLeft = forward * c + left * s;
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        x += arcForward * cos - arcLeft * sin;
+        y += arcForward * sin + arcLeft * cos;
+        heading = LightningMath.boundThetaNegPiToPi(heading + dTheta);
+    }
+
+    /**
+     * Start over from a pose
+     * @param pose the robot's pose on the field
+     */
+    public void reset(Pose2d pose) {
+        x = pose.getX();
+        y = pose.getY();
+        heading = pose.getRotation().getRadians();
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the counter-clockwise heading, in radians
+     */
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @return a new pose, holding the robot's pose on the field
+     */
+    public Pose2d getPose() {
+        return new Pose2d(x, y, new Rotation2d(heading));
+    }
+
+}
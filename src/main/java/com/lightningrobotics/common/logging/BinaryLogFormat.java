@@ -0,0 +1,123 @@
+package com.lightningrobotics.common.logging;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Layout of the binary {@link DataLogger} format.
+ *
+ * Every {@link LogSegmentWriter segment} starts with a header record of the
+ * magic number, format version, and the name and {@link LogFieldType type}
+ * of every field. It is followed by one record per loop. A record starts
+ * with a bitmap of which fields it holds, one bit per field in header order,
+ * least significant bit first. Fields that were not written that loop take
+ * no space. The values follow in header order; doubles and longs take 8
+ * bytes, booleans 1 byte, and strings are a 2 byte length followed by UTF-8
+ * bytes. All values are big-endian.
+ *
+ * Version 1 records had no bitmap and always held every field.
+ */
+public final class BinaryLogFormat {
+
+    /** "LRBL" */
+    public static final int MAGIC = 0x4C52424C;
+
+    public static final short VERSION = 2;
+
+    public static final String EXTENSION = "bin";
+
+    // the most a 2 byte length can hold
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private BinaryLogFormat() { }
+
+    /**
+     * Number of bytes needed to encode a header for the given fields
+     * @param names the field names
+     * @return the encoded header size in bytes
+     */
+    public static int headerSize(List<String> names) {
+        int size = Integer.BYTES + Short.BYTES + Short.BYTES;
+        for (String name : names) {
+            size += 1 + stringSize(name);
+        }
+        return size;
+    }
+
+    /**
+     * Encode a log header
+     * @param buf the buffer to write into
+     * @param names the field names
+     * @param types the field types, in the same order as the names
+     */
+    public static void putHeader(ByteBuffer buf, List<String> names, List<LogFieldType> types) {
+        buf.putInt(MAGIC);
+        buf.putShort(VERSION);
+        buf.putShort((short) names.size());
+        for (int i = 0; i < names.size(); ++i) {
+            buf.put(types.get(i).getId());
+            putString(buf, names.get(i));
+        }
+    }
+
+    /**
+     * Size of the bitmap at the start of each record
+     * @param fieldCount the number of fields in the header
+     * @return the bitmap size in bytes
+     */
+    public static int bitmapSize(int fieldCount) {
+        return (fieldCount + 7) / 8;
+    }
+
+    /**
+     * Number of bytes {@link #putString} writes for a string
+     * @param s the string, null counts as an empty string
+     * @return the encoded size in bytes, including the length
+     */
+    public static int stringSize(String s) {
+        return Short.BYTES + encodedLength(utf8(s));
+    }
+
+    /**
+     * Encode a length-prefixed UTF-8 string. Strings over 65535 bytes are
+     * cut short at the last whole character that fits.
+     * @param buf the buffer to write into
+     * @param s the string to write, null is written as an empty string
+     */
+    public static void putString(ByteBuffer buf, String s) {
+        byte[] bytes = utf8(s);
+        int len = encodedLength(bytes);
+        buf.putShort((short) len);
+        buf.put(bytes, 0, len);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int encodedLength(byte[] bytes) {
+        if (bytes.length <= MAX_STRING_BYTES) {
+            return bytes.length;
+        }
+        // back up to the start of the character cut in half, continuation bytes are 10xxxxxx
+        int len = MAX_STRING_BYTES;
+        while (len > 0 && (bytes[len] & 0xC0) == 0x80) {
+            --len;
+        }
+        return len;
+    }
+
+    /**
+     * Decode a length-prefixed UTF-8 string
+     * @param buf the buffer to read from
+     * @return the decoded string
+     */
+    public static String getString(ByteBuffer buf) {
+        int len = Short.toUnsignedInt(buf.getShort());
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
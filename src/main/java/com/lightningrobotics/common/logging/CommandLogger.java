@@ -8,8 +8,6 @@ import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Vector;
-import java.util.concurrent.ArrayBlockingQueue;
 
 import edu.wpi.first.wpilibj.Timer;
 
@@ -18,8 +16,7 @@ public class CommandLogger {
 
     private final String prefix;
     private BufferedWriter writer;
-    private final ArrayBlockingQueue<String> buffer = new ArrayBlockingQueue<>(logDepth);
-    private final Vector<String> drain = new Vector<>(logDepth);
+    private final LogChannel<StringBuilder> buffer = new LogChannel<>(logDepth, () -> new StringBuilder(256));
     private boolean overflow = false;
 
     private final HashMap<String,String> values = new HashMap<>();
@@ -76,15 +73,36 @@ public class CommandLogger {
     }
 
     private void logString(String s) {
-        overflow |= !buffer.offer(s);
+        StringBuilder line = buffer.claim();
+        if (line == null) {
+            overflow = true;
+            return;
+        }
+        line.setLength(0);
+        line.append(s);
+        buffer.publish();
     }
 
     protected void writeValues() {
-        StringBuilder line = new StringBuilder(Double.toString(Timer.getFPGATimestamp()));
+        StringBuilder line = buffer.claim();
+        if (line == null) {
+            overflow = true;
+            return;
+        }
+        line.setLength(0);
+        line.append(Timer.getFPGATimestamp());
         for (String fld : fieldNames) {
             line.append(",").append(values.get(fld));
         }
-        logString(line.toString());
+        buffer.publish();
+    }
+
+    /**
+     * Number of lines discarded because the buffer was full
+     * @return the dropped line count
+     */
+    public long getDroppedLines() {
+        return buffer.getDropped();
     }
 
     private File logFileName(String prefix) {
@@ -123,23 +141,18 @@ public class CommandLogger {
         }
 
         try {
-            buffer.drainTo(drain);
-            for (String msg : drain) {
-                writer.write(msg);
+            StringBuilder line;
+            while ((line = buffer.peek()) != null) {
+                writer.append(line);
                 writer.newLine();
+                buffer.release();
             }
             if (overflow) {
+                // lines are produced and drained on the same thread, so
+                // the marker always lands right where lines went missing
                 writer.write("BUFFER OVERFLOW\n");
-                // there is a small race condition here
-                // but we can live with it to keep things
-                // fast. The right fix would be to lock
-                // around the read/write to the overflow
-                // boolean, but a false positive will only
-                // happen if we were really close to overflow
-                // anyway...
                 overflow = false;
             }
-            drain.clear();
         } catch (Exception e) {
             System.err.println("Error writing buffer");
             e.printStackTrace();
@@ -0,0 +1,239 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Collects the setpoint, measurement, error and output of every controller
+ * and puts them on the dashboard together, under
+ * {@code Controllers/<name>/...}, at most once per {@link #setPeriod period}.
+ *
+ * Each controller registers a {@link Slot} when it is created. Recording
+ * into a slot only stores four doubles into a shared primitive array, so it
+ * is cheap enough to do on every calculate. {@link #publish()} runs as a
+ * low priority task on the
+ * {@link com.lightningrobotics.common.util.TaskScheduler TaskScheduler}, and
+ * only writes the slots that were recorded into since the last publish.
+ *
+ * Values are recorded from the robot thread and may be published from the
+ * scheduler's worker thread, so a published set of values can mix two
+ * consecutive calculates.
+ */
+public class ControllerTelemetry {
+
+    private static final int SETPOINT = 0;
+    private static final int MEASUREMENT = 1;
+    private static final int ERROR = 2;
+    private static final int OUTPUT = 3;
+    private static final int FIELDS = 4;
+    private static final String[] FIELD_NAMES = { "setpoint", "measurement", "error", "output" };
+
+    private static final Object lock = new Object();
+    private static final ArrayList<Slot> slots = new ArrayList<>();
+
+    // FIELDS values per slot, and how many times each slot was recorded into
+    private static volatile double[] values = new double[16 * FIELDS];
+    private static volatile long[] records = new long[16];
+
+    // publisher side only
+    private static double[] snapshot = new double[0];
+    private static long[] published = new long[0];
+    private static double lastPublish = Double.NEGATIVE_INFINITY;
+    private static volatile double period = 0.1;
+
+    /**
+     * A controller's place in the telemetry arrays
+     */
+    public static class Slot {
+        private final int index;
+        private volatile String name;
+        // resolved by the publisher, cleared on rename
+        private volatile NetworkTableEntry[] entries;
+
+        private Slot(int index, String name) {
+            this.index = index;
+            this.name = name;
+        }
+
+        /**
+         * Record the latest calculate
+         * @param setpoint the setpoint
+         * @param measurement the measurement
+         * @param error the error
+         * @param output the controller output
+         */
+        public void record(double setpoint, double measurement, double error, double output) {
+            double[] v = values;
+            long[] r = records;
+            if (index >= r.length) {
+                return; // registered while the arrays were being grown
+            }
+            int base = index * FIELDS;
+            v[base + SETPOINT] = setpoint;
+            v[base + MEASUREMENT] = measurement;
+            v[base + ERROR] = error;
+            v[base + OUTPUT] = output;
+            r[index]++;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Publish under a different name from now on
+         * @param name the new name
+         */
+        public void setName(String name) {
+            this.name = name;
+            this.entries = null;
+        }
+    }
+
+    /**
+     * The slots of a bank of controllers, next to each other so they can all
+     * be recorded into at once
+     */
+    public static class Block {
+        private final Slot[] slots;
+        private final int first;
+
+        private Block(Slot[] slots) {
+            this.slots = slots;
+            this.first = slots.length > 0 ? slots[0].index : 0;
+        }
+
+        public int size() {
+            return slots.length;
+        }
+
+        public Slot get(int i) {
+            return slots[i];
+        }
+
+        /**
+         * Record the latest calculate of every controller in the block
+         * @param setpoints the setpoints
+         * @param measurements the measurements
+         * @param errors the errors
+         * @param outputs the controller outputs
+         */
+        public void record(double[] setpoints, double[] measurements, double[] errors, double[] outputs) {
+            double[] v = values;
+            long[] r = records;
+            final int n = slots.length;
+            if (first + n > r.length) {
+                return;
+            }
+            for (int i = 0; i < n; ++i) {
+                int base = (first + i) * FIELDS;
+                v[base + SETPOINT] = setpoints[i];
+                v[base + MEASUREMENT] = measurements[i];
+                v[base + ERROR] = errors[i];
+                v[base + OUTPUT] = outputs[i];
+                r[first + i]++;
+            }
+        }
+    }
+
+    /**
+     * Register a controller
+     * @param name the name to publish its values under
+     * @return the controller's slot
+     */
+    public static Slot register(String name) {
+        synchronized (lock) {
+            int index = slots.size();
+            if (index >= records.length) {
+                int capacity = records.length * 2;
+                double[] v = new double[capacity * FIELDS];
+                long[] r = new long[capacity];
+                System.arraycopy(values, 0, v, 0, values.length);
+                System.arraycopy(records, 0, r, 0, records.length);
+                values = v;
+                records = r;
+            }
+            Slot slot = new Slot(index, name);
+            slots.add(slot);
+            return slot;
+        }
+    }
+
+    /**
+     * Register a bank of controllers, named {@code <name>/<i>} until renamed
+     * @param name the name of the bank
+     * @param count the number of controllers
+     * @return the bank's slots
+     */
+    public static Block register(String name, int count) {
+        synchronized (lock) {
+            Slot[] block = new Slot[count];
+            for (int i = 0; i < count; ++i) {
+                block[i] = register(name + "/" + i);
+            }
+            return new Block(block);
+        }
+    }
+
+    /**
+     * Set how often values are published
+     * @param seconds the time between publishes
+     */
+    public static void setPeriod(double seconds) {
+        period = seconds;
+    }
+
+    public static double getPeriod() {
+        return period;
+    }
+
+    /**
+     * Publish every slot recorded into since the last publish, if a period
+     * has passed. Called by the task scheduler.
+     */
+    public static void publish() {
+        double now = Timer.getFPGATimestamp();
+        if (now - lastPublish < period) {
+            return;
+        }
+        lastPublish = now;
+
+        Slot[] current;
+        synchronized (lock) {
+            current = slots.toArray(new Slot[0]);
+        }
+        double[] v = values;
+        long[] r = records;
+        if (snapshot.length < v.length) {
+            snapshot = new double[v.length];
+            published = Arrays.copyOf(published, r.length);
+        }
+        System.arraycopy(v, 0, snapshot, 0, v.length);
+
+        for (Slot slot : current) {
+            int i = slot.index;
+            long count = r[i];
+            if (count == published[i]) {
+                continue;
+            }
+            published[i] = count;
+
+            NetworkTableEntry[] entries = slot.entries;
+            if (entries == null) {
+                entries = new NetworkTableEntry[FIELDS];
+                for (int f = 0; f < FIELDS; ++f) {
+                    entries[f] = SmartDashboard.getEntry("Controllers/" + slot.name + "/" + FIELD_NAMES[f]);
+                }
+                slot.entries = entries;
+            }
+            for (int f = 0; f < FIELDS; ++f) {
+                entries[f].setDouble(snapshot[i * FIELDS + f]);
+            }
+        }
+    }
+
+}
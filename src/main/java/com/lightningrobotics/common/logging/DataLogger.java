@@ -1,33 +1,67 @@
 package com.lightningrobotics.common.logging;
 
 import java.io.File;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
 import com.lightningrobotics.common.util.Loop;
 
 public class DataLogger implements Loop {
-    private static final int max_lines = 15000;
     private static DataLogger logger;
     private static String baseFName = "robot";
 
     private LogWriter writer;
-    private ArrayList<String> fieldNames = new ArrayList<>();
-    private ArrayList<Supplier<String>> fieldValues = new ArrayList<>();
+    private final LogSchema schema = new LogSchema();
+    private DoubleSupplier[] doubleFields = new DoubleSupplier[0];
+    private LongSupplier[] longFields = new LongSupplier[0];
+    private ArrayList<Supplier<String>> stringFields = new ArrayList<>();
     private boolean first_time = true;
     private boolean preventNewElements = false;
-
-    private int line_count = 0;
+    private boolean binary = false;
+
+    // sampled on the robot thread, formatted on the serializer thread
+    private static final int snapshotDepth = 128;
+    private static final double serializePeriod = 0.02;
+    private ArrayBlockingQueue<LogSnapshot> freeSnapshots;
+    private ArrayBlockingQueue<LogSnapshot> pendingSnapshots;
+    private long droppedSnapshots = 0;
+    private final Object serializeLock = new Object();
+    private Thread serializer;
+    private final StringBuilder line = new StringBuilder();
+    private ByteBuffer record = ByteBuffer.allocate(4096);
+
+    private double sampleBudget = 0.002;
+    private double sampleTime = 0;
+    private int sampleTimeSlot;
+    private long sampleOverruns = 0;
+
+    // last value written for each slot, for on-change fields
+    private double[] lastDoubles;
+    private long[] lastLongs;
+    private String[] lastStrings;
+    private int tick = 0;
+    private boolean keyframeRequested = true;
+    private static final int keyframePeriod = 500;
 
     public static DataLogger getLogger() {
         if (logger == null) {
             logger = new DataLogger();
             logger.addElement("Timestamp", () -> Timer.getFPGATimestamp());
+            logger.sampleTimeSlot = logger.addDoubleElement("Log Sample Time", () -> logger.sampleTime, SampleRate.everyTick());
+            logger.addElement("Log Queue Depth", () -> logger.writer.getQueueDepth());
+            logger.addLongElement("Log Dropped Records", () -> logger.writer.getDroppedRecords());
+            logger.addElement("Log Write Latency", () -> logger.writer.getWriteLatency());
         }
         return logger;
     }
@@ -40,25 +74,152 @@ public class DataLogger implements Loop {
         DataLogger.getLogger().addElement(name, val);
     }
 
+    public static void addDataElement(String name, DoubleSupplier val, SampleRate rate) {
+        DataLogger.getLogger().addElement(name, val, rate);
+    }
+
     public static void addDataElement(String name, Supplier<String> val) {
         DataLogger.getLogger().addElement(name, val);
     }
 
+    public static void addDataElement(String name, Supplier<String> val, SampleRate rate) {
+        DataLogger.getLogger().addElement(name, val, rate);
+    }
+
+    public static void addLongDataElement(String name, LongSupplier val) {
+        DataLogger.getLogger().addLongElement(name, val);
+    }
+
+    public static void addLongDataElement(String name, LongSupplier val, SampleRate rate) {
+        DataLogger.getLogger().addLongElement(name, val, rate);
+    }
+
+    public static void addBooleanDataElement(String name, BooleanSupplier val) {
+        DataLogger.getLogger().addBooleanElement(name, val);
+    }
+
+    public static void addBooleanDataElement(String name, BooleanSupplier val, SampleRate rate) {
+        DataLogger.getLogger().addBooleanElement(name, val, rate);
+    }
+
     public static void addDelayedDataElement(String name, DoubleSupplier val) {
         DataLogger.getLogger().addElement(name, new DataLoggerOutOfBand(val));
     }
 
-    public void addElement(String name, Supplier<String> val) {
+    private boolean checkNewElement(String name) {
         if (preventNewElements) {
             System.err.println("Unexpected call to addDataElement: " + name);
-        } else {
-            fieldNames.add(name);
-            fieldValues.add(val);
+            return false;
+        }
+        return true;
+    }
+
+    public void addElement(String name, Supplier<String> val) {
+        addElement(name, val, SampleRate.everyTick());
+    }
+
+    public void addElement(String name, Supplier<String> val, SampleRate rate) {
+        if (checkNewElement(name)) {
+            schema.add(name, LogFieldType.STRING, rate);
+            stringFields.add(val);
         }
     }
 
     public void addElement(String name, DoubleSupplier val) {
-        addElement(name, () -> Double.toString(val.getAsDouble()));
+        addElement(name, val, SampleRate.everyTick());
+    }
+
+    public void addElement(String name, DoubleSupplier val, SampleRate rate) {
+        if (checkNewElement(name)) {
+            addDoubleElement(name, val, rate);
+        }
+    }
+
+    private int addDoubleElement(String name, DoubleSupplier val, SampleRate rate) {
+        int slot = schema.add(name, LogFieldType.DOUBLE, rate);
+        doubleFields = Arrays.copyOf(doubleFields, slot + 1);
+        doubleFields[slot] = val;
+        return slot;
+    }
+
+    public void addLongElement(String name, LongSupplier val) {
+        addLongElement(name, val, SampleRate.everyTick());
+    }
+
+    public void addLongElement(String name, LongSupplier val, SampleRate rate) {
+        if (checkNewElement(name)) {
+            int slot = schema.add(name, LogFieldType.LONG, rate);
+            longFields = Arrays.copyOf(longFields, slot + 1);
+            longFields[slot] = val;
+        }
+    }
+
+    public void addBooleanElement(String name, BooleanSupplier val) {
+        addBooleanElement(name, val, SampleRate.everyTick());
+    }
+
+    public void addBooleanElement(String name, BooleanSupplier val, SampleRate rate) {
+        if (checkNewElement(name)) {
+            int slot = schema.add(name, LogFieldType.BOOLEAN, rate);
+            longFields = Arrays.copyOf(longFields, slot + 1);
+            longFields[slot] = () -> val.getAsBoolean() ? 1 : 0;
+        }
+    }
+
+    /**
+     * Switch between the CSV and the binary log format. The binary format
+     * writes each loop as a fixed layout record of primitives instead of
+     * building a string, and can be converted back to CSV off the robot with
+     * {@link LogDecoder}. Changing formats starts a new log file.
+     * @param binary true to write binary logs, false to write CSV
+     */
+    public static void setBinaryFormat(boolean binary) {
+        DataLogger dl = getLogger();
+        synchronized (dl.serializeLock) {
+            if (dl.binary != binary) {
+                dl.binary = binary;
+                dl.reset_file();
+            }
+        }
+    }
+
+    public static boolean isBinaryFormat() {
+        return getLogger().binary;
+    }
+
+    /**
+     * Number of loops that were not logged because every snapshot was
+     * still waiting on the writer
+     * @return the dropped snapshot count
+     */
+    public long getDroppedSnapshots() {
+        return droppedSnapshots;
+    }
+
+    /**
+     * Set how long sampling every field may take each loop before it
+     * counts as an overrun. The measured time is logged in the
+     * {@code Log Sample Time} column.
+     * @param seconds the sampling budget in seconds
+     */
+    public static void setSampleBudget(double seconds) {
+        getLogger().sampleBudget = seconds;
+    }
+
+    /**
+     * Time taken to sample every field on the last loop
+     * @return the sample time in seconds
+     */
+    public double getSampleTime() {
+        return sampleTime;
+    }
+
+    /**
+     * Number of loops where sampling took longer than the budget
+     * @return the overrun count
+     */
+    public long getSampleOverruns() {
+        return sampleOverruns;
     }
 
     public void onStart() {
@@ -74,30 +235,178 @@ public class DataLogger implements Loop {
     }
 
     public String getHeader() {
-        return fieldNames.stream().collect(Collectors.joining(","));
+        return String.join(",", schema.getNames());
     }
 
+    /**
+     * Hand the header to the writer, which repeats it at the start of
+     * every segment
+     */
     private void writeHeader() {
-        writer.logRawString(getHeader());
+        writer.setHeader(getHeaderBytes());
+    }
+
+    private ByteBuffer getHeaderBytes() {
+        if (binary) {
+            var header = ByteBuffer.allocate(BinaryLogFormat.headerSize(schema.getNames()));
+            BinaryLogFormat.putHeader(header, schema.getNames(), schema.getTypes());
+            header.flip();
+            return header;
+        }
+        return StandardCharsets.UTF_8.encode(getHeader());
     }
 
     private void writeValues() {
-        line_count += 1;
-        if (line_count >= max_lines) {
-            reset_file();
+        // snapshots are sized once the fields are locked
+        if (freeSnapshots == null) {
+            return;
+        }
+
+        LogSnapshot snapshot = freeSnapshots.poll();
+        if (snapshot == null) {
+            droppedSnapshots += 1;
+            return;
+        }
+
+        sample(snapshot);
+        pendingSnapshots.offer(snapshot);
+    }
+
+    /**
+     * Sample every field that is due in column order, on this thread, in
+     * one pass. Most suppliers read subsystem state that is not thread
+     * safe, so they must never be called concurrently.
+     *
+     * Every so often a keyframe writes every field regardless of its
+     * {@link SampleRate}, so any part of a log can be read on its own.
+     */
+    private void sample(LogSnapshot snapshot) {
+        double start = Timer.getFPGATimestamp();
+
+        boolean keyframe = keyframeRequested || tick % keyframePeriod == 0;
+        keyframeRequested = false;
+
+        final boolean[] present = snapshot.present;
+        final double[] doubles = snapshot.doubles;
+        final long[] longs = snapshot.longs;
+        final String[] strings = snapshot.strings;
+        for (int i = 0; i < schema.size(); ++i) {
+            if (!keyframe && tick % schema.getPeriod(i) != 0) {
+                present[i] = false;
+                continue;
+            }
+
+            int slot = schema.getSlot(i);
+            double deadband = schema.getDeadband(i);
+            boolean write = keyframe || Double.isNaN(deadband);
+            switch (schema.getType(i)) {
+                case DOUBLE:
+                    double d = doubleFields[slot].getAsDouble();
+                    doubles[slot] = d;
+                    // written when NaN on either side too
+                    write |= !(Math.abs(d - lastDoubles[slot]) <= deadband);
+                    if (write) {
+                        lastDoubles[slot] = d;
+                    }
+                    break;
+                case STRING:
+                    String str = stringFields.get(slot).get();
+                    strings[slot] = str;
+                    write |= !Objects.equals(str, lastStrings[slot]);
+                    if (write) {
+                        lastStrings[slot] = str;
+                    }
+                    break;
+                default:
+                    long l = longFields[slot].getAsLong();
+                    longs[slot] = l;
+                    write |= Math.abs(l - lastLongs[slot]) > deadband;
+                    if (write) {
+                        lastLongs[slot] = l;
+                    }
+                    break;
+            }
+            present[i] = write;
         }
+        tick += 1;
+
+        sampleTime = Timer.getFPGATimestamp() - start;
+        doubles[sampleTimeSlot] = sampleTime;
+        if (sampleTime > sampleBudget) {
+            sampleOverruns += 1;
+        }
+    }
 
-        String valueList = fieldValues.parallelStream()
-                           .map(fn -> fn.get())
-                           .collect(Collectors.joining(","));
+    private void startSerializer() {
+        serializer = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                long period = Math.round(serializePeriod * 1000);
+                while (true) {
+                    synchronized (serializeLock) {
+                        serialize();
+                    }
+
+                    try {
+                        Thread.sleep(period);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "DataLogger");
+        serializer.setDaemon(true);
+        serializer.start();
+    }
+
+    /**
+     * Format every pending snapshot. Only called with the serializeLock held,
+     * so snapshots always reach the file in the order they were sampled.
+     */
+    private void serialize() {
+        if (pendingSnapshots == null) {
+            return;
+        }
 
-        // System.out.println(valueList);
-        writer.logRawString(valueList);
+        LogSnapshot snapshot;
+        while ((snapshot = pendingSnapshots.poll()) != null) {
+            if (binary) {
+                writeRecord(snapshot);
+            } else {
+                line.setLength(0);
+                snapshot.format(schema, line);
+                writer.logRawString(line.toString());
+            }
+            freeSnapshots.offer(snapshot);
+        }
+    }
+
+    private void writeRecord(LogSnapshot snapshot) {
+        while (true) {
+            try {
+                record.clear();
+                snapshot.write(schema, record);
+                record.flip();
+                writer.logRecord(record);
+                return;
+            } catch (BufferOverflowException e) {
+                // only happens with long string fields, so grow and try again
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
     }
 
     private DataLogger() {
+        openWriter();
+    }
+
+    private void openWriter() {
         File file = logFileName();
         writer = new LogWriter(file.getAbsolutePath());
+        writer.setSegmentNamer(this::nextLogFileName);
+        if (!first_time) {
+            writeHeader();
+        }
     }
 
     private static boolean foundDS = false;
@@ -124,7 +433,7 @@ public class DataLogger implements Loop {
     }
 
     private File cachedLogFileName = null;
-    private File logFileName() {
+    private synchronized File logFileName() {
         if (cachedLogFileName != null)
             return cachedLogFileName;
 
@@ -150,10 +459,11 @@ public class DataLogger implements Loop {
         //noinspection ResultOfMethodCallIgnored
         base.mkdirs();
 
-        String name_format = baseFName + "-%05d-dl.log";
+        String name_format = baseFName + "-%05d-dl." + (binary ? BinaryLogFormat.EXTENSION : "log");
         int counter = 1;
         File result = new File(base, String.format(name_format, counter));
-        while (result.exists()) {
+        // a name is taken while its segment exists, compressed or not
+        while (result.exists() || LogRetention.compressedFile(result).exists()) {
             result = new File(base, String.format(name_format, ++counter));
         }
         System.out.println("Logging to " + result);
@@ -162,17 +472,35 @@ public class DataLogger implements Loop {
         return result;
     }
 
-    public void reset_file() {
+    /**
+     * Called by the writer thread when a segment fills up
+     */
+    private synchronized String nextLogFileName() {
         cachedLogFileName = null;
-        flush();
-        writer.setFileName(logFileName().getAbsolutePath());
-        writeHeader();
-        line_count = 0;
+        return logFileName().getAbsolutePath();
     }
 
+    /**
+     * Start a new log file. Never blocks, the writer thread switches files
+     * once everything sampled so far is written to the old one.
+     */
+    public void reset_file() {
+        synchronized (serializeLock) {
+            // everything sampled so far belongs in the old file
+            serialize();
+
+            // until the fields are locked the header is written by onStart
+            writer.startNewSegment(first_time ? null : getHeaderBytes());
+            keyframeRequested = true;
+        }
+    }
+
+    /**
+     * Ask the {@link LogWriter} to commit everything written so far. Never
+     * blocks, the writer thread commits on its next pass.
+     */
     public static void flush() {
         System.out.println("Datalogger flush");
-        getLogger().writer.drain();
         getLogger().writer.flush();
     }
 
@@ -181,7 +509,7 @@ public class DataLogger implements Loop {
         if (writer.isValid()) {
             writeValues();
         } else {
-            writer = new LogWriter(logFileName().getAbsolutePath());
+            openWriter();
         }
     }
 
@@ -193,8 +521,34 @@ public class DataLogger implements Loop {
         getLogger().lockItUp();
     }
 
+    /**
+     * Check if fields can still be added, which they can until
+     * {@link #preventNewDataElements()} is called
+     * @return true if addDataElement would add the field
+     */
+    public static boolean acceptsNewDataElements() {
+        return !getLogger().preventNewElements;
+    }
+
     private void lockItUp() {
         logger.preventNewElements = true;
+
+        if (freeSnapshots == null) {
+            freeSnapshots = new ArrayBlockingQueue<>(snapshotDepth);
+            pendingSnapshots = new ArrayBlockingQueue<>(snapshotDepth);
+            for (int i = 0; i < snapshotDepth; ++i) {
+                freeSnapshots.offer(schema.newSnapshot());
+            }
+
+            lastDoubles = new double[schema.getDoubleCount()];
+            lastLongs = new long[schema.getLongCount()];
+            lastStrings = new String[schema.getStringCount()];
+        }
+
         onStart();
+
+        if (serializer == null) {
+            startSerializer();
+        }
     }
 }
@@ -0,0 +1,122 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock-free ring of preallocated slots connecting exactly one
+ * producer thread to exactly one consumer thread.
+ *
+ * The producer {@link #claim() claims} the next free slot, fills it in, and
+ * {@link #publish() publishes} it. The consumer {@link #peek() peeks} at the
+ * oldest published slot, reads it, and {@link #release() releases} it back
+ * to the producer. Slots are reused, so nothing is allocated after
+ * construction. When the ring is full a claim fails and is counted as
+ * dropped, the producer never waits on the consumer.
+ *
+ * Using a channel from more than one producer or more than one consumer
+ * thread at a time is not safe.
+ *
+ * @param <T> the slot type
+ */
+public class LogChannel<T> {
+
+    private final Object[] slots;
+    private final int mask;
+
+    // next slot the consumer will read, written only by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // next slot the producer will fill, written only by the producer
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Create a channel
+     * @param capacity minimum number of slots, rounded up to a power of two
+     * @param factory creates each slot up front
+     */
+    public LogChannel(int capacity, Supplier<T> factory) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Object[size];
+        mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            slots[i] = factory.get();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T slot(long index) {
+        return (T) slots[(int) index & mask];
+    }
+
+    /**
+     * Producer side: get the next free slot to fill in
+     * @return the slot, or null if the channel is full and the record was dropped
+     */
+    public T claim() {
+        long t = tail.get();
+        if (t - head.get() >= slots.length) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return slot(t);
+    }
+
+    /**
+     * Producer side: hand the slot from the last successful {@link #claim()} to the consumer
+     */
+    public void publish() {
+        tail.lazySet(tail.get() + 1);
+    }
+
+    /**
+     * Consumer side: get the oldest published slot without removing it
+     * @return the slot, or null if the channel is empty
+     */
+    public T peek() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        return slot(h);
+    }
+
+    /**
+     * Consumer side: give the slot from the last {@link #peek()} back to the producer
+     */
+    public void release() {
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Consumer side: discard everything published so far
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    /**
+     * Number of published slots waiting on the consumer
+     * @return the channel depth
+     */
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Total number of slots
+     * @return the channel capacity
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Number of claims that failed because the channel was full
+     * @return the dropped record count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.lightningrobotics.common.logging;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Desktop tool that converts {@link LogSegmentWriter log segments} back into
+ * plain text. Text logs come out line for line, and binary {@link DataLogger}
+ * logs are converted into the CSV layout written by the text logger.
+ *
+ * Usage: {@code java -cp common.jar com.lightningrobotics.common.logging.LogDecoder <segment>...}
+ *
+ * Each segment is written next to its input with {@code .csv} appended,
+ * segments compressed by {@link LogRetention} are decompressed on the fly.
+ * A record cut short by a crash or brownout ends the decode of that segment,
+ * everything before it is kept.
+ */
+public final class LogDecoder {
+
+    private final List<String> names = new ArrayList<>();
+    private final List<LogFieldType> types = new ArrayList<>();
+    private short version;
+
+    private LogDecoder() { }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LogDecoder <segment>...");
+            System.exit(1);
+        }
+
+        for (String in : args) {
+            String out = in.replaceFirst("\\" + LogRetention.COMPRESSED_EXTENSION + "$", "") + ".csv";
+            try (Writer output = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8))) {
+                int records = decode(new File(in), output);
+                System.out.println("Decoded " + records + " records to " + out);
+            }
+        }
+    }
+
+    /**
+     * Convert a log segment to text
+     * @param in the segment
+     * @param out where to write the text
+     * @return the number of records decoded
+     * @throws IOException if the segment could not be read or the text written
+     */
+    public static int decode(File in, Writer out) throws IOException {
+        var decoder = new LogDecoder();
+
+        int records = 0;
+        StringBuilder line = new StringBuilder();
+        for (ByteBuffer record : LogSegmentReader.read(in)) {
+            line.setLength(0);
+            if (record.remaining() >= Integer.BYTES && record.getInt(record.position()) == BinaryLogFormat.MAGIC) {
+                decoder.readHeader(record);
+                line.append(String.join(",", decoder.names));
+            } else if (!decoder.types.isEmpty()) {
+                decoder.formatRecord(record, line);
+            } else {
+                line.append(StandardCharsets.UTF_8.decode(record));
+            }
+
+            out.write(line.toString());
+            out.write(System.lineSeparator());
+            records += 1;
+        }
+
+        return records;
+    }
+
+    private void readHeader(ByteBuffer buf) throws IOException {
+        buf.getInt();
+        version = buf.getShort();
+        if (version < 1 || version > BinaryLogFormat.VERSION) {
+            throw new IOException("Unsupported binary log version: " + version);
+        }
+
+        names.clear();
+        types.clear();
+        int count = Short.toUnsignedInt(buf.getShort());
+        for (int i = 0; i < count; ++i) {
+            types.add(LogFieldType.fromId(buf.get()));
+            names.add(BinaryLogFormat.getString(buf));
+        }
+    }
+
+    private void formatRecord(ByteBuffer buf, StringBuilder line) {
+        // fields left out of a record are left empty, just like the CSV logger does
+        int bitmap = buf.position();
+        if (version > 1) {
+            buf.position(bitmap + BinaryLogFormat.bitmapSize(types.size()));
+        }
+
+        for (int i = 0; i < types.size(); ++i) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (version > 1 && (buf.get(bitmap + i / 8) & (1 << (i % 8))) == 0) {
+                continue;
+            }
+
+            switch (types.get(i)) {
+                case DOUBLE:
+                    line.append(buf.getDouble());
+                    break;
+                case LONG:
+                    line.append(buf.getLong());
+                    break;
+                case BOOLEAN:
+                    line.append(buf.get() != 0 ? '1' : '0');
+                    break;
+                case STRING:
+                    line.append(BinaryLogFormat.getString(buf));
+                    break;
+            }
+        }
+    }
+
+}
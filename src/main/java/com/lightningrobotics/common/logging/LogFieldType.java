@@ -0,0 +1,48 @@
+package com.lightningrobotics.common.logging;
+
+/**
+ * The type of a {@link DataLogger} field, as written in the binary log header
+ */
+public enum LogFieldType {
+
+    DOUBLE(Double.BYTES),
+    LONG(Long.BYTES),
+    BOOLEAN(1),
+    STRING(-1);
+
+    private final int width;
+
+    LogFieldType(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Number of bytes a value of this type takes up in a binary record
+     * @return the width in bytes, or -1 if the type is variable width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Identifier used for this type in the binary log header
+     * @return the type id
+     */
+    public byte getId() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Look up a field type by its binary log identifier
+     * @param id the type id read from a header
+     * @return the matching field type
+     */
+    public static LogFieldType fromId(byte id) {
+        var types = values();
+        if (id < 0 || id >= types.length) {
+            throw new IllegalArgumentException("Unknown log field type: " + id);
+        }
+        return types[id];
+    }
+
+}
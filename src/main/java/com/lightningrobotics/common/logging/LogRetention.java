@@ -0,0 +1,295 @@
+package com.lightningrobotics.common.logging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the log directories from filling up, on a low priority daemon
+ * thread so it never holds up the robot loop.
+ *
+ * Every pass goes over the log directory on the roboRIO and the one on any
+ * USB drive mounted at {@code /u} through {@code /z}. Log segments that are
+ * no longer being written are gzipped, then the oldest files are deleted
+ * until each directory is under the byte and file count limits, and
+ * anything older than the age limit is removed.
+ */
+public class LogRetention {
+
+    public static final String COMPRESSED_EXTENSION = ".gz";
+
+    private static LogRetention instance;
+
+    private final Object lock = new Object();
+    private Thread thread;
+    private boolean passRequested = false;
+    private int passMaxFiles = Integer.MAX_VALUE;
+    private final List<CompletableFuture<Integer>> passWaiters = new ArrayList<>();
+
+    private long period = TimeUnit.SECONDS.toMillis(30);
+    private volatile long maxBytes = 100L * 1024 * 1024;
+    private volatile long maxAge = TimeUnit.DAYS.toMillis(7);
+    private volatile int maxFiles = Integer.MAX_VALUE;
+    private volatile boolean compress = true;
+    private volatile int fileCount = 0;
+
+    // file times before this are from a roboRIO that had not synced its clock yet
+    private static final long validClock = 1640995200000L; // 2022-01-01
+
+    private LogRetention() { }
+
+    public static synchronized LogRetention getInstance() {
+        if (instance == null) {
+            instance = new LogRetention();
+        }
+        return instance;
+    }
+
+    /**
+     * Start the retention thread if it is not already running
+     */
+    public static void start() {
+        getInstance().startThread();
+    }
+
+    private synchronized void startThread() {
+        if (thread != null) {
+            return;
+        }
+
+        thread = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                retentionLoop();
+            }
+        }, "LogRetention");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Ask for a retention pass as soon as possible. Never blocks on the pass itself.
+     */
+    public void requestPass() {
+        start();
+        synchronized (lock) {
+            passRequested = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Ask for a single retention pass that also keeps each log directory to
+     * a number of files, without changing the standing file limit. Never
+     * blocks on the pass itself.
+     * @param files the most files each log directory may hold after this pass
+     * @return completes with the log file count once the pass has run
+     */
+    public CompletableFuture<Integer> requestPass(int files) {
+        var done = new CompletableFuture<Integer>();
+        start();
+        synchronized (lock) {
+            passMaxFiles = Math.min(passMaxFiles, files);
+            passWaiters.add(done);
+            passRequested = true;
+            lock.notifyAll();
+        }
+        return done;
+    }
+
+    /**
+     * @param bytes the most each log directory may hold
+     */
+    public void setMaxBytes(long bytes) {
+        maxBytes = bytes;
+    }
+
+    /**
+     * @param seconds how old a log file may get before it is deleted
+     */
+    public void setMaxAge(double seconds) {
+        maxAge = Math.round(seconds * 1000);
+    }
+
+    /**
+     * @param files the most files each log directory may hold
+     */
+    public void setMaxFiles(int files) {
+        maxFiles = files;
+    }
+
+    /**
+     * @param compress true to gzip log segments once they are closed
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Number of log files found on the last pass, across all directories
+     * @return the log file count
+     */
+    public int getLogFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Every directory logs are written to
+     * @return the roboRIO log directory and the one on each mounted USB drive
+     */
+    public static List<File> logRoots() {
+        List<File> roots = new ArrayList<>();
+        for (char mount = 'u'; mount <= 'z'; ++mount) {
+            File f = new File("/" + mount);
+            if (f.isDirectory()) {
+                roots.add(new File(f, "log"));
+            }
+        }
+        roots.add(new File("/home/lvuser/log"));
+        return roots;
+    }
+
+    private void retentionLoop() {
+        while (true) {
+            int fileLimit;
+            List<CompletableFuture<Integer>> waiters;
+            synchronized (lock) {
+                try {
+                    if (!passRequested) {
+                        lock.wait(period);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                passRequested = false;
+                fileLimit = Math.min(maxFiles, passMaxFiles);
+                passMaxFiles = Integer.MAX_VALUE;
+                waiters = passWaiters.isEmpty() ? List.of() : new ArrayList<>(passWaiters);
+                passWaiters.clear();
+            }
+
+            try {
+                runPass(fileLimit);
+                for (var waiter : waiters) {
+                    waiter.complete(fileCount);
+                }
+            } catch (Exception e) {
+                System.err.println("Log retention pass failed");
+                e.printStackTrace();
+                for (var waiter : waiters) {
+                    waiter.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private void runPass(int fileLimit) {
+        int count = 0;
+        for (File root : logRoots()) {
+            File[] files = root.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+
+            if (compress) {
+                for (int i = 0; i < files.length; ++i) {
+                    files[i] = compressClosedSegment(files[i]);
+                }
+            }
+
+            count += enforceLimits(files, fileLimit);
+        }
+        fileCount = count;
+    }
+
+    /**
+     * @return the file a segment is gzipped to
+     */
+    static File compressedFile(File segment) {
+        return new File(segment.getPath() + COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Gzip a segment that no writer has open anymore
+     * @return the file that now holds the segment
+     */
+    private File compressClosedSegment(File file) {
+        if (LogSegmentReader.isCompressed(file) || LogSegmentWriter.isOpen(file) || !LogSegmentReader.isSegment(file)) {
+            return file;
+        }
+
+        File compressed = compressedFile(file);
+        // never replace an earlier segment that was compressed under the same name
+        for (int n = 2; compressed.exists(); ++n) {
+            compressed = new File(file.getPath() + "." + n + COMPRESSED_EXTENSION);
+        }
+        File partial = new File(compressed.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(file);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(partial))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Could not compress " + file);
+            e.printStackTrace();
+            //noinspection ResultOfMethodCallIgnored
+            partial.delete();
+            return file;
+        }
+
+        // only drop the original once the compressed copy is complete
+        if (partial.renameTo(compressed)) {
+            //noinspection ResultOfMethodCallIgnored
+            compressed.setLastModified(file.lastModified());
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return compressed;
+        }
+        return file;
+    }
+
+    /**
+     * Delete the oldest files until the directory is within its limits
+     * @param fileLimit the most files the directory may hold on this pass
+     * @return the number of files left
+     */
+    private int enforceLimits(File[] files, int fileLimit) {
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+
+        long now = System.currentTimeMillis();
+        int left = files.length;
+        for (File f : files) {
+            if (LogSegmentWriter.isOpen(f)) {
+                continue;
+            }
+
+            long modified = f.lastModified();
+            boolean tooOld = now > validClock && modified > validClock && now - modified > maxAge;
+            if (!tooOld && total <= maxBytes && left <= fileLimit) {
+                continue;
+            }
+
+            long length = f.length();
+            if (f.delete()) {
+                total -= length;
+                left -= 1;
+            }
+        }
+        return left;
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column layout of the {@link DataLogger}. Every column has a name, a
+ * {@link LogFieldType type}, and a slot in the primitive array of a
+ * {@link LogSnapshot} that holds its sampled value: doubles live in
+ * {@code doubles}, longs and booleans in {@code longs}, and strings in
+ * {@code strings}. Each column also has its own {@link SampleRate}.
+ */
+class LogSchema {
+
+    private final ArrayList<String> names = new ArrayList<>();
+    private final ArrayList<LogFieldType> types = new ArrayList<>();
+    private int[] slots = new int[0];
+    private int[] periods = new int[0];
+    private double[] deadbands = new double[0];
+
+    private int doubleCount = 0;
+    private int longCount = 0;
+    private int stringCount = 0;
+
+    /**
+     * Add a column
+     * @return the slot the column's value is sampled into
+     */
+    int add(String name, LogFieldType type, SampleRate rate) {
+        int slot;
+        switch (type) {
+            case DOUBLE:
+                slot = doubleCount++;
+                break;
+            case STRING:
+                slot = stringCount++;
+                break;
+            default:
+                slot = longCount++;
+                break;
+        }
+
+        names.add(name);
+        types.add(type);
+        int column = slots.length;
+        slots = Arrays.copyOf(slots, column + 1);
+        slots[column] = slot;
+        periods = Arrays.copyOf(periods, column + 1);
+        periods[column] = rate.getPeriod();
+        deadbands = Arrays.copyOf(deadbands, column + 1);
+        deadbands[column] = rate.getDeadband();
+        return slot;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    List<String> getNames() {
+        return names;
+    }
+
+    List<LogFieldType> getTypes() {
+        return types;
+    }
+
+    LogFieldType getType(int column) {
+        return types.get(column);
+    }
+
+    int getSlot(int column) {
+        return slots[column];
+    }
+
+    int getPeriod(int column) {
+        return periods[column];
+    }
+
+    /**
+     * @return the column's deadband, or NaN if it is written whenever sampled
+     */
+    double getDeadband(int column) {
+        return deadbands[column];
+    }
+
+    int getDoubleCount() {
+        return doubleCount;
+    }
+
+    int getLongCount() {
+        return longCount;
+    }
+
+    int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * Allocate a snapshot sized for the current columns
+     */
+    LogSnapshot newSnapshot() {
+        return new LogSnapshot(size(), doubleCount, longCount, stringCount);
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.lightningrobotics.common.logging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the records back out of a segment written by {@link LogSegmentWriter}.
+ * Reading stops at the zero filled tail of a segment or at the first record
+ * that is incomplete or fails its CRC, so everything before a crash is kept.
+ * Segments compressed by {@link LogRetention} are read the same way.
+ */
+public final class LogSegmentReader {
+
+    private LogSegmentReader() { }
+
+    /**
+     * Check if a file is a segment compressed by {@link LogRetention}
+     * @param file the file to check
+     * @return true if the file is gzipped
+     */
+    public static boolean isCompressed(File file) {
+        return file.getName().endsWith(LogRetention.COMPRESSED_EXTENSION);
+    }
+
+    /**
+     * Check if a file starts like an uncompressed log segment
+     * @param file the file to check
+     * @return true if the file has a segment header
+     */
+    public static boolean isSegment(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            return channel.read(header) == Integer.BYTES && header.getInt(0) == LogSegmentWriter.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read every intact record in a segment
+     * @param file the segment file
+     * @return the record payloads, in order
+     * @throws IOException if the file is not a log segment or could not be read
+     */
+    public static List<ByteBuffer> read(File file) throws IOException {
+        ByteBuffer buf;
+        if (isCompressed(file)) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+                buf = ByteBuffer.wrap(in.readAllBytes());
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        if (buf.remaining() < LogSegmentWriter.SEGMENT_HEADER_SIZE || buf.getInt() != LogSegmentWriter.MAGIC) {
+            throw new IOException("Not a log segment: " + file);
+        }
+
+        short version = buf.getShort();
+        if (version != LogSegmentWriter.VERSION) {
+            throw new IOException("Unsupported log segment version: " + version);
+        }
+
+        List<ByteBuffer> records = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= LogSegmentWriter.RECORD_HEADER_SIZE) {
+            int header = buf.getInt();
+            if ((header & LogSegmentWriter.COMMITTED) == 0) {
+                break;
+            }
+
+            int length = header & ~LogSegmentWriter.COMMITTED;
+            int expected = buf.getInt();
+            if (length > buf.remaining()) {
+                break;
+            }
+
+            ByteBuffer payload = buf.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expected) {
+                break;
+            }
+
+            records.add(payload);
+            buf.position(buf.position() + length);
+        }
+
+        return records;
+    }
+
+}
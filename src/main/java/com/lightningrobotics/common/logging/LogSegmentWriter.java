@@ -0,0 +1,176 @@
+package com.lightningrobotics.common.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Writes log records into fixed size, memory-mapped segment files.
+ *
+ * Each segment is preallocated to its full size when opened, so appending a
+ * record never grows the file or touches file system metadata. A segment
+ * starts with the {@link #MAGIC magic number} and format version, followed
+ * by records of a 4 byte length, a 4 byte CRC-32 of the payload, and the
+ * payload itself. The length is written last and has its top bit set, so
+ * after a brownout a reader can recover every record up to the last one
+ * that fully made it to disk, see {@link LogSegmentReader}.
+ *
+ * Not thread safe, {@link LogWriter} only uses it from its writer thread.
+ */
+public class LogSegmentWriter {
+
+    /** "LRSG" */
+    public static final int MAGIC = 0x4C525347;
+
+    public static final short VERSION = 1;
+
+    static final int SEGMENT_HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    static final int COMMITTED = 0x80000000;
+
+    private static final Set<File> openSegments = ConcurrentHashMap.newKeySet();
+
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private File file;
+    private int records = 0;
+
+    /**
+     * Create a segment writer
+     * @param segmentSize size of each segment file in bytes
+     */
+    public LogSegmentWriter(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Close the current segment, if any, and start a new one
+     * @param file the new segment file, replaced if it exists
+     * @throws IOException if the segment could not be created
+     */
+    public void open(File file) throws IOException {
+        close();
+
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // mapping past the end of the file preallocates the whole segment
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        map.putInt(MAGIC);
+        map.putShort(VERSION);
+        this.file = file.getAbsoluteFile();
+        openSegments.add(this.file);
+        records = 0;
+    }
+
+    /**
+     * Check if a payload fits in what is left of the current segment
+     * @param length the payload size in bytes
+     * @return true if {@link #append(ByteBuffer)} would succeed
+     */
+    public boolean fits(int length) {
+        return map != null && map.remaining() >= RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Check if a payload could ever fit in a segment
+     * @param length the payload size in bytes
+     * @return true if the payload fits in an empty segment
+     */
+    public boolean fitsEmpty(int length) {
+        return segmentSize - SEGMENT_HEADER_SIZE >= RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Append a record to the current segment. The payload's position is
+     * left unchanged.
+     * @param payload the bytes between the buffer's position and limit
+     * @return false if the record does not fit and a new segment is needed
+     */
+    public boolean append(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (!fits(length)) {
+            return false;
+        }
+
+        int start = map.position();
+        int pos = payload.position();
+        crc.reset();
+        crc.update(payload);
+        payload.position(pos);
+
+        map.position(start + RECORD_HEADER_SIZE);
+        map.put(payload);
+        payload.position(pos);
+        map.putInt(start + Integer.BYTES, (int) crc.getValue());
+        map.putInt(start, length | COMMITTED);
+
+        records += 1;
+        return true;
+    }
+
+    /**
+     * Write everything appended so far through to the disk
+     */
+    public void force() {
+        if (map != null) {
+            map.force();
+        }
+    }
+
+    /**
+     * Force and close the current segment, trimming off the unused tail
+     * @throws IOException if the segment could not be closed
+     */
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        map.force();
+        int end = map.position();
+        map = null;
+        try {
+            channel.truncate(end);
+        } catch (IOException e) {
+            // some platforms refuse to truncate a mapped file, the zero
+            // filled tail is harmless to readers
+        }
+        channel.close();
+        channel = null;
+        openSegments.remove(file);
+    }
+
+    /**
+     * Check if any writer still has a segment open
+     * @param file the segment file
+     * @return true if the segment is still being written
+     */
+    public static boolean isOpen(File file) {
+        return openSegments.contains(file.getAbsoluteFile());
+    }
+
+    /**
+     * The current segment file
+     * @return the file, or null if no segment is open
+     */
+    public File getFile() {
+        return channel == null ? null : file;
+    }
+
+    /**
+     * Number of records in the current segment
+     * @return the record count
+     */
+    public int getRecordCount() {
+        return records;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.lightningrobotics.common.logging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One loop's worth of sampled {@link DataLogger} values. Snapshots are
+ * preallocated and recycled, so sampling into one never allocates; turning
+ * one into text or bytes is left to the writer side.
+ *
+ * Columns that were not written this loop, because of their
+ * {@link SampleRate}, are left out of the record.
+ */
+class LogSnapshot {
+
+    final boolean[] present;
+    final double[] doubles;
+    final long[] longs;
+    final String[] strings;
+
+    LogSnapshot(int columnCount, int doubleCount, int longCount, int stringCount) {
+        present = new boolean[columnCount];
+        doubles = new double[doubleCount];
+        longs = new long[longCount];
+        strings = new String[stringCount];
+    }
+
+    /**
+     * Format this snapshot as a CSV line
+     */
+    void format(LogSchema schema, StringBuilder line) {
+        for (int i = 0; i < schema.size(); ++i) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (!present[i]) {
+                continue;
+            }
+
+            int slot = schema.getSlot(i);
+            switch (schema.getType(i)) {
+                case DOUBLE:
+                    line.append(doubles[slot]);
+                    break;
+                case LONG:
+                    line.append(longs[slot]);
+                    break;
+                case BOOLEAN:
+                    line.append(longs[slot] != 0 ? '1' : '0');
+                    break;
+                case STRING:
+                    line.append(strings[slot]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Encode this snapshot as a binary record body, see {@link BinaryLogFormat}
+     */
+    void write(LogSchema schema, ByteBuffer buf) {
+        for (int i = 0; i < schema.size(); i += 8) {
+            int bits = 0;
+            for (int bit = 0; bit < 8 && i + bit < schema.size(); ++bit) {
+                if (present[i + bit]) {
+                    bits |= 1 << bit;
+                }
+            }
+            buf.put((byte) bits);
+        }
+
+        for (int i = 0; i < schema.size(); ++i) {
+            if (!present[i]) {
+                continue;
+            }
+
+            int slot = schema.getSlot(i);
+            switch (schema.getType(i)) {
+                case DOUBLE:
+                    buf.putDouble(doubles[slot]);
+                    break;
+                case LONG:
+                    buf.putLong(longs[slot]);
+                    break;
+                case BOOLEAN:
+                    buf.put((byte) (longs[slot] != 0 ? 1 : 0));
+                    break;
+                case STRING:
+                    BinaryLogFormat.putString(buf, strings[slot]);
+                    break;
+            }
+        }
+    }
+
+}
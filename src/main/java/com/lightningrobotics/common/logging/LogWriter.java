@@ -1,42 +1,212 @@
 package com.lightningrobotics.common.logging;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Vector;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 import edu.wpi.first.wpilibj.Timer;
 import com.lightningrobotics.common.util.Loop;
 
+/**
+ * Writes log lines and binary records to {@link LogSegmentWriter segments}
+ * from a dedicated daemon thread. Producers only ever claim a slot in a
+ * {@link LogChannel}, anything that does not fit is counted and dropped.
+ * The writer thread batches whatever is queued and commits it to disk
+ * together once enough time has passed or enough bytes have built up.
+ *
+ * Every line or record becomes one CRC checked record in the segment, so
+ * a brownout only loses what was not yet committed. When a segment fills up
+ * the writer moves on to a new one and repeats the {@link #setHeader header}
+ * at its start, so each segment can be decoded on its own with
+ * {@link LogDecoder}.
+ *
+ * The channel has a single producer side, so lines and records must only
+ * be logged from one thread at a time.
+ */
 public class LogWriter implements Loop {
-    private BufferedWriter writer;
-    private final ArrayBlockingQueue<String> buffer;
-    private final Vector<String> drain;
-    private boolean overflow = false;
+    private final LogSegmentWriter segment;
+    private Supplier<String> segmentNamer;
+    private String baseFile;
+    private int segmentCounter;
+    private ByteBuffer header;
+    private final LogChannel<Record> buffer;
+    private volatile boolean overflow = false;
+    // a new segment asked for while the channel was full
+    private volatile boolean segmentRequested = false;
+    private volatile ByteBuffer requestedHeader;
     private final static int logDepth = 1000;
+    private final static int segmentSize = 16 * 1024 * 1024;
     private boolean valid = true;
 
-    public LogWriter(String file, int buffer_depth) {
-        buffer = new ArrayBlockingQueue<>(buffer_depth);
-        drain = new Vector<>(buffer_depth);
+    // group commit, touched only with fileLock held
+    private final Object fileLock = new Object();
+    private final static long pollPeriod = TimeUnit.MILLISECONDS.toNanos(20);
+    private final static double commitPeriod = 1.0;
+    private final static int commitBytes = 64 * 1024;
+    private long uncommittedBytes = 0;
+    private double lastCommit = 0;
+    private volatile boolean commitRequested = false;
+    private volatile double writeLatency = 0;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private ByteBuffer encoded = ByteBuffer.allocate(1024);
+
+    /**
+     * A preallocated channel slot, holding either a line of text or a
+     * binary record
+     */
+    private static class Record {
+        final StringBuilder text = new StringBuilder(256);
+        ByteBuffer bytes = ByteBuffer.allocate(256);
+        boolean binary = false;
+        // start a new segment here instead, bytes holds its header if binary
+        boolean newSegment = false;
+    }
+
+    public LogWriter(String file, int buffer_depth, int segment_size) {
+        buffer = new LogChannel<>(buffer_depth, Record::new);
+        segment = new LogSegmentWriter(segment_size);
         setFileName(file);
+
+        Thread thread = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                writeLoop();
+            }
+        }, "LogWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public LogWriter(String file, int buffer_depth) {
+        this(file, buffer_depth, segmentSize);
     }
 
     public LogWriter(String fname) {
         this(fname, logDepth);
     }
 
+    /**
+     * Close the current segment and continue in a new file. Segments
+     * started after this one fills up are named by appending a counter
+     * to this name, unless {@link #setSegmentNamer} is used.
+     * @param file the new file
+     */
     public void setFileName(String file) {
-        try {
-            if (writer != null) {
-                drain();
-                writer.close();
-                buffer.clear();
+        synchronized (fileLock) {
+            if (segment.getFile() != null) {
+                writeBatch();
             }
 
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            baseFile = file;
+            segmentCounter = 0;
+            openSegment(file);
+        }
+    }
+
+    /**
+     * Continue in a new segment once everything queued before this call has
+     * been written. Never blocks, the writer thread closes the current
+     * segment and opens the next one, named like one started because the
+     * current one filled up.
+     * @param newHeader the header for the new segment and those after it,
+     *                  the bytes between the buffer's position and limit
+     *                  are copied. Null keeps the current header.
+     */
+    public void startNewSegment(ByteBuffer newHeader) {
+        Record record = buffer.claim();
+        if (record == null) {
+            // no room to keep it in order, so start it after the queue instead
+            requestedHeader = newHeader != null ? copy(newHeader) : null;
+            segmentRequested = true;
+            return;
+        }
+
+        record.newSegment = true;
+        record.binary = newHeader != null;
+        if (newHeader != null) {
+            if (record.bytes.capacity() < newHeader.remaining()) {
+                record.bytes = ByteBuffer.allocate(newHeader.remaining());
+            }
+            record.bytes.clear();
+            record.bytes.put(newHeader.duplicate());
+            record.bytes.flip();
+        }
+        buffer.publish();
+    }
+
+    // must be called with the fileLock held
+    private void startSegment(ByteBuffer newHeader) {
+        if (newHeader != null) {
+            header = copy(newHeader);
+        }
+        openSegment(nextSegment());
+    }
+
+    private static ByteBuffer copy(ByteBuffer bytes) {
+        ByteBuffer copy = ByteBuffer.allocate(bytes.remaining());
+        copy.put(bytes.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    /**
+     * Choose the file name for each new segment started when the current
+     * one fills up
+     * @param namer called on the writer thread to name the next segment
+     */
+    public void setSegmentNamer(Supplier<String> namer) {
+        synchronized (fileLock) {
+            segmentNamer = namer;
+        }
+    }
+
+    private String nextSegment() {
+        if (segmentNamer != null) {
+            return segmentNamer.get();
+        }
+        return String.format("%s.%03d", baseFile, ++segmentCounter);
+    }
+
+    /**
+     * Set a header line written at the start of every segment. If nothing
+     * has been written to the current segment yet it is written right away.
+     * @param s the header line
+     */
+    public void setHeader(String s) {
+        synchronized (fileLock) {
+            setHeader(encode(s));
+        }
+    }
+
+    /**
+     * Set a header record written at the start of every segment. If nothing
+     * has been written to the current segment yet it is written right away.
+     * @param bytes the bytes between the buffer's position and limit
+     */
+    public void setHeader(ByteBuffer bytes) {
+        synchronized (fileLock) {
+            header = copy(bytes);
+
+            if (segment.getFile() != null && segment.getRecordCount() == 0) {
+                segment.append(header);
+            }
+        }
+    }
+
+    private void openSegment(String file) {
+        try {
+            segment.open(new File(file));
+            uncommittedBytes = 0;
+            lastCommit = Timer.getFPGATimestamp();
+            if (header != null) {
+                segment.append(header);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -44,44 +214,125 @@ public class LogWriter implements Loop {
 
     public void onLoop() {
         drain();
-        valid = (writer == null);
+        valid = (segment.getFile() == null);
     }
 
-    public void drain() {
+    private void writeLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            synchronized (fileLock) {
+                writeBatch();
+            }
+            // nothing on the producer side ever waits on us, so just
+            // check back regularly for new records and commit deadlines
+            LockSupport.parkNanos(pollPeriod);
+        }
+    }
+
+    /**
+     * Write everything queued, committing it if a threshold has been
+     * reached. Must be called with the fileLock held.
+     */
+    private void writeBatch() {
         try {
-            buffer.drainTo(drain);
-            for (String msg : drain) {
-                writer.write(msg);
-                writer.newLine();
+            double start = Timer.getFPGATimestamp();
+            long written = 0;
+
+            // with no segment open everything is dropped, but a new one
+            // may still be asked for
+            Record record;
+            while ((record = buffer.peek()) != null) {
+                if (record.newSegment) {
+                    record.newSegment = false;
+                    startSegment(record.binary ? record.bytes : null);
+                } else if (segment.getFile() != null) {
+                    written += append(record.binary ? record.bytes : encode(record.text));
+                }
+                buffer.release();
             }
-            if (overflow) {
-                writer.write("BUFFER OVERFLOW\n");
-                /* there is a small race condition here
-                but we can live with it to keep things
-                fast. The right fix would be to lock
-                around the read/write to the overflow
-                boolean, but a false positive will only
-                happen if we were really close to overflow
-                anyway... */
+            if (overflow && segment.getFile() != null) {
+                written += append(encode("BUFFER OVERFLOW"));
                 overflow = false;
             }
-            drain.clear();
+            if (segmentRequested) {
+                segmentRequested = false;
+                startSegment(requestedHeader);
+            }
+            if (segment.getFile() == null) {
+                return;
+            }
+
+            uncommittedBytes += written;
+            double now = Timer.getFPGATimestamp();
+            if (uncommittedBytes >= commitBytes
+                || (uncommittedBytes > 0 && (commitRequested || now - lastCommit >= commitPeriod))) {
+                commit();
+            }
+
+            if (written > 0) {
+                writeLatency = Timer.getFPGATimestamp() - start;
+            }
         } catch (Exception e) {
             System.err.println("Error writing buffer");
             e.printStackTrace();
         }
     }
 
-    public void flush() {
-        try {
-            writer.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+    private int append(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (!segment.fitsEmpty(length)) {
+            System.err.println("Log record too large for a segment: " + length + " bytes");
+            return 0;
         }
+
+        if (!segment.append(payload)) {
+            openSegment(nextSegment());
+            segment.append(payload);
+        }
+        return length;
+    }
+
+    private ByteBuffer encode(CharSequence text) {
+        int max = (int) Math.ceil(text.length() * encoder.maxBytesPerChar());
+        if (encoded.capacity() < max) {
+            encoded = ByteBuffer.allocate(max);
+        }
+
+        encoded.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), encoded, true);
+        encoder.flush(encoded);
+        encoded.flip();
+        return encoded;
+    }
+
+    private void commit() {
+        segment.force();
+        uncommittedBytes = 0;
+        lastCommit = Timer.getFPGATimestamp();
+        commitRequested = false;
+    }
+
+    /**
+     * Write out everything queued on the calling thread. The writer thread
+     * already does this continuously, so the robot loop should never need
+     * to call it.
+     */
+    public void drain() {
+        synchronized (fileLock) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Ask the writer thread to commit what it has written on its next pass.
+     * Never blocks.
+     */
+    public void flush() {
+        commitRequested = true;
     }
 
     public void logString(String s) {
-        overflow |= !buffer.offer(String.format("%6.3f: %s", Timer.getFPGATimestamp(), s));
+        logRawString(String.format("%6.3f: %s", Timer.getFPGATimestamp(), s));
     }
 
     @Override
@@ -93,15 +344,75 @@ public class LogWriter implements Loop {
     }
 
     public void close() {
-        try {
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        synchronized (fileLock) {
+            try {
+                writeBatch();
+                segment.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
     public void logRawString(String s) {
-        overflow |= !buffer.offer(s);
+        Record record = buffer.claim();
+        if (record == null) {
+            // text logs get a marker where lines went missing
+            overflow = true;
+            return;
+        }
+
+        record.binary = false;
+        record.text.setLength(0);
+        record.text.append(s);
+        buffer.publish();
+    }
+
+    /**
+     * Queue a binary record for the writer thread. The bytes between the
+     * buffer's position and limit are copied, so the caller is free to
+     * reuse the buffer as soon as this returns.
+     * @param bytes the encoded record
+     */
+    public void logRecord(ByteBuffer bytes) {
+        Record record = buffer.claim();
+        if (record == null) {
+            return;
+        }
+
+        if (record.bytes.capacity() < bytes.remaining()) {
+            record.bytes = ByteBuffer.allocate(Math.max(bytes.remaining(), record.bytes.capacity() * 2));
+        }
+
+        record.binary = true;
+        record.bytes.clear();
+        record.bytes.put(bytes);
+        record.bytes.flip();
+        buffer.publish();
+    }
+
+    /**
+     * Number of lines and records waiting on the writer thread
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    /**
+     * Number of lines and records discarded because the queue was full
+     * @return the dropped record count
+     */
+    public long getDroppedRecords() {
+        return buffer.getDropped();
+    }
+
+    /**
+     * Time the writer thread took to write and commit its last batch
+     * @return the write latency in seconds
+     */
+    public double getWriteLatency() {
+        return writeLatency;
     }
 
     public boolean isValid(){
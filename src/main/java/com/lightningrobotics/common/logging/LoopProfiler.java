@@ -0,0 +1,179 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.ArrayList;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Times the phases of the robot loop into {@link TimingHistogram histograms}
+ * and reports the p50, p99 and max of each, in milliseconds, to the
+ * dashboard and the {@link DataLogger}.
+ *
+ * {@link com.lightningrobotics.common.LightningRobot LightningRobot} profiles
+ * its own phases and the scheduler run. The scheduler calls each
+ * subsystem's periodic() itself, so subsystems opt in by registering a
+ * phase in their constructor and wrapping their periodic() with it:
+ *
+ * <pre>
+ * private final LoopProfiler.Phase profile = LoopProfiler.phase("Subsystem/" + getName());
+ *
+ * public void periodic() {
+ *     profile.start();
+ *     ...
+ *     profile.stop();
+ * }
+ * </pre>
+ *
+ * Phases must be registered before
+ * {@link DataLogger#preventNewDataElements()} to be logged, and must only be
+ * timed from the robot thread.
+ */
+public class LoopProfiler {
+
+    // 50us buckets out to 50ms, past that only the max is kept
+    private static final long bucketNanos = 50_000;
+    private static final int bucketCount = 1000;
+
+    // stats are published every call, but cover this many calls' worth of samples
+    private static final int windowLength = 10;
+    private static int published = 0;
+
+    private static final ArrayList<Phase> phases = new ArrayList<>();
+
+    /**
+     * A timed section of the loop
+     */
+    public static class Phase {
+        private final String name;
+        private final String p50Key;
+        private final String p99Key;
+        private final String maxKey;
+        private final TimingHistogram histogram = new TimingHistogram(bucketNanos, bucketCount);
+        private long start = -1;
+        private double p50 = 0;
+        private double p99 = 0;
+        private double max = 0;
+
+        private Phase(String name) {
+            this.name = name;
+            this.p50Key = "Profiler/" + name + "/p50";
+            this.p99Key = "Profiler/" + name + "/p99";
+            this.maxKey = "Profiler/" + name + "/max";
+        }
+
+        public void start() {
+            start = System.nanoTime();
+        }
+
+        public void stop() {
+            if (start >= 0) {
+                histogram.record(System.nanoTime() - start);
+                start = -1;
+            }
+        }
+
+        /**
+         * Time a section of code as this phase
+         * @param section the code to time
+         */
+        public void time(Runnable section) {
+            start();
+            try {
+                section.run();
+            } finally {
+                stop();
+            }
+        }
+
+        private void publish() {
+            p50 = toMillis(histogram.getPercentile(0.5));
+            p99 = toMillis(histogram.getPercentile(0.99));
+            max = toMillis(histogram.getMax());
+
+            SmartDashboard.putNumber(p50Key, p50);
+            SmartDashboard.putNumber(p99Key, p99);
+            SmartDashboard.putNumber(maxKey, max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return median time from the last publish, in milliseconds
+         */
+        public double getP50() {
+            return p50;
+        }
+
+        /**
+         * @return 99th percentile time from the last publish, in milliseconds
+         */
+        public double getP99() {
+            return p99;
+        }
+
+        /**
+         * @return worst time from the last publish, in milliseconds
+         */
+        public double getMax() {
+            return max;
+        }
+
+        public TimingHistogram getHistogram() {
+            return histogram;
+        }
+    }
+
+    /**
+     * Register a new phase, and log its stats if the {@link DataLogger} is
+     * still accepting fields. Registering the same name twice returns the
+     * existing phase.
+     * @param name the phase name used on the dashboard and in the log
+     * @return the phase
+     */
+    public static Phase phase(String name) {
+        for (Phase phase : phases) {
+            if (phase.name.equals(name)) {
+                return phase;
+            }
+        }
+
+        Phase phase = new Phase(name);
+        phases.add(phase);
+
+        // phases registered later still reach the dashboard
+        if (DataLogger.acceptsNewDataElements()) {
+            // only written when a publish changes them
+            SampleRate rate = SampleRate.onChange(0);
+            DataLogger.addDataElement(name + " p50", phase::getP50, rate);
+            DataLogger.addDataElement(name + " p99", phase::getP99, rate);
+            DataLogger.addDataElement(name + " max", phase::getMax, rate);
+        }
+        return phase;
+    }
+
+    /**
+     * Push every phase's stats to the dashboard. The histograms are cleared
+     * every few calls, so the stats cover a window of recent loops rather
+     * than the whole match.
+     */
+    public static void publish() {
+        boolean reset = ++published >= windowLength;
+        for (int i = 0; i < phases.size(); ++i) {
+            Phase phase = phases.get(i);
+            phase.publish();
+            if (reset) {
+                phase.histogram.reset();
+            }
+        }
+        if (reset) {
+            published = 0;
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+}
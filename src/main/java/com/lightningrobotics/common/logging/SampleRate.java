@@ -0,0 +1,76 @@
+package com.lightningrobotics.common.logging;
+
+/**
+ * How often a {@link DataLogger} field is written. A field is either
+ * written every tick, every Nth tick, or sampled every tick but only
+ * written when it moves by more than a deadband. Ticks where a field is
+ * not written leave an empty CSV cell and cost nothing in a binary log.
+ */
+public final class SampleRate {
+
+    private static final SampleRate EVERY_TICK = new SampleRate(1, Double.NaN);
+
+    private final int period;
+    private final double deadband;
+
+    private SampleRate(int period, double deadband) {
+        this.period = period;
+        this.deadband = deadband;
+    }
+
+    /**
+     * Write the field on every tick
+     * @return the sample rate
+     */
+    public static SampleRate everyTick() {
+        return EVERY_TICK;
+    }
+
+    /**
+     * Sample and write the field once every {@code ticks} ticks
+     * @param ticks the number of ticks between samples
+     * @return the sample rate
+     */
+    public static SampleRate every(int ticks) {
+        if (ticks < 1) {
+            throw new IllegalArgumentException("Sample period must be at least one tick: " + ticks);
+        }
+        return new SampleRate(ticks, Double.NaN);
+    }
+
+    /**
+     * Sample the field every tick but only write it when it changes by more
+     * than the deadband since it was last written. Strings are written
+     * whenever they are not equal.
+     * @param deadband the smallest change that gets written
+     * @return the sample rate
+     */
+    public static SampleRate onChange(double deadband) {
+        if (!(deadband >= 0)) {
+            throw new IllegalArgumentException("Deadband must not be negative: " + deadband);
+        }
+        return new SampleRate(1, deadband);
+    }
+
+    /**
+     * @return the number of ticks between samples
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the deadband, or NaN if the field is written every time it is sampled
+     */
+    public double getDeadband() {
+        return deadband;
+    }
+
+    /**
+     * @return true if the field is only written when it changes
+     */
+    public boolean isOnChange() {
+        return !Double.isNaN(deadband);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.lightningrobotics.common.logging;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of durations with fixed width buckets. All storage is allocated
+ * up front, so recording a sample is just an array increment and is safe
+ * to do every loop. Anything past the last bucket is counted as overflow
+ * and reported as the largest sample seen.
+ */
+public class TimingHistogram {
+
+    private final long bucketNanos;
+    private final long[] buckets;
+    private long overflow = 0;
+    private long count = 0;
+    private long max = 0;
+
+    /**
+     * @param bucketNanos width of each bucket in nanoseconds
+     * @param bucketCount number of buckets, samples past
+     *                    {@code bucketNanos * bucketCount} count as overflow
+     */
+    public TimingHistogram(long bucketNanos, int bucketCount) {
+        if (bucketNanos < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Histogram needs at least one non-empty bucket");
+        }
+        this.bucketNanos = bucketNanos;
+        this.buckets = new long[bucketCount];
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        long bucket = nanos / bucketNanos;
+        if (bucket < buckets.length) {
+            buckets[(int) bucket]++;
+        } else {
+            overflow++;
+        }
+
+        count++;
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Upper edge of the bucket holding the given fraction of samples. This
+     * never exceeds the largest sample, so a percentile landing in the
+     * overflow is the max.
+     * @param fraction between 0 and 1, e.g. 0.99 for the 99th percentile
+     * @return the percentile in nanoseconds, or 0 with no samples
+     */
+    public long getPercentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(fraction * count);
+        if (rank < 1) {
+            rank = 1;
+        }
+
+        long seen = 0;
+        for (int i = 0; i < buckets.length; ++i) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * bucketNanos, max);
+            }
+        }
+        return max;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getOverflow() {
+        return overflow;
+    }
+
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        overflow = 0;
+        count = 0;
+        max = 0;
+    }
+
+}
@@ -5,6 +5,8 @@ import java.util.function.Supplier;
 import com.ctre.phoenix.sensors.PigeonIMU;
 import com.kauailabs.navx.frc.AHRS;
 
+import com.lightningrobotics.common.logging.LoopProfiler;
+
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
@@ -59,6 +61,8 @@ public class LightningIMU extends SubsystemBase {
 
     private IMUType type;
 
+    private final LoopProfiler.Phase profile = LoopProfiler.phase("Subsystem/" + getName());
+
     private AHRS navx = null;
 
     private PigeonIMU pigeon = null;
@@ -177,9 +181,11 @@ public class LightningIMU extends SubsystemBase {
 
     @Override
     public void periodic() {
+        profile.start();
         if(type == IMUType.PIGEON && pigeon != null && ypr != null) {
             pigeon.getYawPitchRoll(ypr);
         }
+        profile.stop();
     }
 
 }
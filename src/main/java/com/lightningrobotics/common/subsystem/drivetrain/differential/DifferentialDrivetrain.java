@@ -9,6 +9,7 @@ import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 import com.lightningrobotics.common.controller.PIDFController;
 import com.lightningrobotics.common.geometry.LightningOdometer;
 import com.lightningrobotics.common.geometry.kinematics.*;
+import com.lightningrobotics.common.logging.LoopProfiler;
 import com.lightningrobotics.common.subsystem.core.LightningIMU;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningGains;
@@ -36,6 +37,8 @@ public class DifferentialDrivetrain extends LightningDrivetrain {
 
     private int motorCount = 0;
 
+    private final LoopProfiler.Phase profile = LoopProfiler.phase("Subsystem/" + getName());
+
     public DifferentialDrivetrain(DifferentialGains gains, MotorController[] leftMotors, MotorController[] rightMotors,
             LightningIMU IMU, DoubleSupplier leftVelocity, DoubleSupplier rightVelocity, DoubleSupplier leftDistance,
             DoubleSupplier rightDistance) {
@@ -98,8 +101,10 @@ public class DifferentialDrivetrain extends LightningDrivetrain {
 
     @Override
     public void periodic() {
+        profile.start();
         state = new DifferentialDrivetrainState(leftVelocity.getAsDouble(), rightVelocity.getAsDouble());
         odometer.update(IMU.getHeading(), leftDistance.getAsDouble(), rightDistance.getAsDouble());
+        profile.stop();
     }
 
     public DrivetrainState getDriveTrainState() {
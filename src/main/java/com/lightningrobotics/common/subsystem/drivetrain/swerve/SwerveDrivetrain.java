@@ -1,15 +1,23 @@
 package com.lightningrobotics.common.subsystem.drivetrain.swerve;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.lightningrobotics.common.controller.PIDFBank;
 import com.lightningrobotics.common.geometry.kinematics.DrivetrainSpeed;
 import com.lightningrobotics.common.geometry.kinematics.DrivetrainState;
 import com.lightningrobotics.common.geometry.kinematics.swerve.SwerveDrivetrainState;
 import com.lightningrobotics.common.geometry.kinematics.swerve.SwerveModuleState;
+import com.lightningrobotics.common.geometry.kinematics.swerve.SwerveOdometry;
+import com.lightningrobotics.common.logging.LoopProfiler;
+import com.lightningrobotics.common.subsystem.core.LightningIMU;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningDrivetrain;
 import com.lightningrobotics.common.subsystem.drivetrain.LightningGains;
+import com.lightningrobotics.common.util.LightningMath;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.motorcontrol.MotorController;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 
@@ -32,16 +40,86 @@ public abstract class SwerveDrivetrain extends LightningDrivetrain {
     private SwerveDrivetrainState state;
     private DrivetrainSpeed speed;
 
+    // drive controllers in channels 0 to n - 1, azimuth controllers in n to 2n - 1
+    private final PIDFBank controllers;
+    private final boolean[] closedLoopDrive;
+    private final double[] measurements;
+    private final double[] setpoints;
+    private final double[] outputs;
+    private final double[] moduleSpeeds;
+    private final double[] moduleAngles;
+    private final double[] moduleAngularVelocities;
+
+    // corrections to the commanded speed, off by default
+    private double discretizePeriod;
+    private boolean secondOrder;
+    private final double[] command = new double[3];
+    private final double[] lastCommand = new double[3];
+    private double lastCommandTime = -1;
+
+    // odometry, from the measured module states and the IMU if there is one
+    private final LightningIMU imu;
+    private final double[] measuredSpeeds;
+    private final double[] measuredAngles;
+    private final double[] measuredSpeed = new double[3];
+    private final double[] chassisSpeed = new double[3];
+    private final SwerveOdometry odometry = new SwerveOdometry();
+    private double headingOffset;
+    private double lastUpdate = -1;
+    private Pose2d pose = new Pose2d();
+
+    private final LoopProfiler.Phase profile = LoopProfiler.phase("Subsystem/" + getName());
+
     public SwerveDrivetrain(SwerveGains gains, SwerveModule... modules) {
+        this(gains, null, modules);
+    }
+
+    /**
+     * Create a swerve drivetrain that tracks its pose with an IMU
+     * @param gains the drivetrain gains
+     * @param imu the heading source for odometry, or null to integrate the
+     *            heading from the modules
+     * @param modules the modules, in the order of {@link Modules}
+     */
+    public SwerveDrivetrain(SwerveGains gains, LightningIMU imu, SwerveModule... modules) {
         this.gains = gains;
         this.modules = modules;
+        this.imu = imu;
 
-        this.state = new SwerveDrivetrainState(new SwerveModuleState[]{
-            new SwerveModuleState(0d, modules[Modules.FRONT_LEFT.getModuleID()].getModuleAngle()),
-            new SwerveModuleState(0d, modules[Modules.FRONT_RIGHT.getModuleID()].getModuleAngle()),
-            new SwerveModuleState(0d, modules[Modules.REAR_LEFT.getModuleID()].getModuleAngle()),
-            new SwerveModuleState(0d, modules[Modules.REAR_RIGHT.getModuleID()].getModuleAngle())
-        });
+        final int n = modules.length;
+        if (gains.getKinematics().getModuleCount() != n) {
+            throw new IllegalArgumentException("the kinematics has " + gains.getKinematics().getModuleCount()
+                    + " modules but the drivetrain has " + n);
+        }
+
+        for (int i = 0; i < n; ++i) {
+            modules[i].setName(i < Modules.values().length ? Modules.values()[i].name() : "Module " + i);
+        }
+        this.measuredSpeeds = new double[n];
+        this.measuredAngles = new double[n];
+        this.moduleSpeeds = new double[n];
+        this.moduleAngles = new double[n];
+        this.moduleAngularVelocities = new double[n];
+
+        this.controllers = new PIDFBank(2 * n);
+        this.closedLoopDrive = new boolean[n];
+        this.measurements = new double[2 * n];
+        this.setpoints = new double[2 * n];
+        this.outputs = new double[2 * n];
+        for (int i = 0; i < n; ++i) {
+            var driveController = modules[i].getDriveController();
+            if (driveController != null) {
+                controllers.set(i, driveController);
+                closedLoopDrive[i] = true;
+            }
+            controllers.set(n + i, modules[i].getAzimuthController());
+        }
+
+        var initial = new SwerveModuleState[n];
+        for (int i = 0; i < n; ++i) {
+            initial[i] = new SwerveModuleState(0d, modules[i].getModuleAngle());
+        }
+        this.state = new SwerveDrivetrainState(initial);
 
         // Initialize zero drive speed
         speed = new DrivetrainSpeed();
@@ -49,20 +127,17 @@ public abstract class SwerveDrivetrain extends LightningDrivetrain {
         // Put some data on shuffleboard
         var tab = Shuffleboard.getTab("Swerve Module States");
 
-        tab.addString("FL Real", () -> modules[Modules.FRONT_LEFT.getModuleID()].getState().toString());
-        tab.addString("FL Target", () -> state.getStates()[Modules.FRONT_LEFT.getModuleID()].toString());
-
-        tab.addString("FR Real", () -> modules[Modules.FRONT_RIGHT.getModuleID()].getState().toString());
-        tab.addString("FR Target", () -> state.getStates()[Modules.FRONT_RIGHT.getModuleID()].toString());
-
-        tab.addString("RL Real", () -> modules[Modules.REAR_LEFT.getModuleID()].getState().toString());
-        tab.addString("RL Target", () -> state.getStates()[Modules.REAR_LEFT.getModuleID()].toString());
-
-        tab.addString("RR Real", () -> modules[Modules.REAR_RIGHT.getModuleID()].getState().toString());
-        tab.addString("RR Target", () -> state.getStates()[Modules.REAR_RIGHT.getModuleID()].toString());
+        final String[] labels = { "FL", "FR", "RL", "RR" };
+        for (int i = 0; i < n; ++i) {
+            final int module = i;
+            final String label = n == labels.length ? labels[i] : "Module " + i;
+            tab.addString(label + " Real", () -> modules[module].getState().toString());
+            tab.addString(label + " Target", () -> new SwerveModuleState(setpoints[module],
+                    new Rotation2d(setpoints[n + module])).toString());
+        }
 
         tab.addString("Target Speed", () -> speed.toString());
-        tab.addString("Real Speed", () -> gains.getKinematics().forward(state).toString());
+        tab.addString("Real Speed", () -> new DrivetrainSpeed(measuredSpeed[0], measuredSpeed[1], measuredSpeed[2]).toString());
 
     }
 
@@ -79,26 +154,159 @@ public abstract class SwerveDrivetrain extends LightningDrivetrain {
         }
     }
 
+    /**
+     * Drive at a speed in this library's swerve convention, +vy to the
+     * right and +omega clockwise, in the kinematics' units
+     * @param speed the speed, relative to the robot
+     */
     @Override
     public void setDriveSpeed(DrivetrainSpeed speed) {
-        //var states = new SwerveDrivetrainSpeed(speed, gains).getStates();
-        var state = (SwerveDrivetrainState) gains.getKinematics().inverse(speed);
-        var swerveModuleStates = state.getStates();
-
-        for (int i = 0; i < swerveModuleStates.length; i++) {
-            SwerveModule module = modules[i];
-            SwerveModuleState moduleState = swerveModuleStates[i];
-            module.setState(moduleState);
+        drive(speed.vx, speed.vy, speed.omega);
+    }
+
+    /**
+     * Drive at a speed in WPILib's convention, +vy to the left and omega
+     * counter-clockwise in radians per second, like the output of a
+     * {@link com.lightningrobotics.common.controller.HolonomicDriveController}
+     * @param speed the speed, relative to the robot
+     */
+    public void setChassisSpeed(DrivetrainSpeed speed) {
+        gains.getKinematics().fromChassisSpeed(speed.vx, speed.vy, speed.omega, chassisSpeed);
+        drive(chassisSpeed[0], chassisSpeed[1], chassisSpeed[2]);
+    }
+
+    private void drive(double vx, double vy, double omega) {
+        var kinematics = gains.getKinematics();
+        if (discretizePeriod > 0) {
+            kinematics.discretize(vx, vy, omega, discretizePeriod, command);
+        } else {
+            command[0] = vx;
+            command[1] = vy;
+            command[2] = omega;
         }
+
+        if (secondOrder) {
+            // the acceleration is how the command changed since the last loop
+            double now = Timer.getFPGATimestamp();
+            double dt = now - lastCommandTime;
+            double scale = lastCommandTime >= 0 && dt > 0 && dt < 0.1 ? 1 / dt : 0;
+            lastCommandTime = now;
+            kinematics.inverse(command[0], command[1], command[2],
+                    (command[0] - lastCommand[0]) * scale,
+                    (command[1] - lastCommand[1]) * scale,
+                    (command[2] - lastCommand[2]) * scale,
+                    moduleSpeeds, moduleAngles, moduleAngularVelocities);
+            System.arraycopy(command, 0, lastCommand, 0, 3);
+        } else {
+            kinematics.inverse(command[0], command[1], command[2], moduleSpeeds, moduleAngles);
+        }
+
+        // every module's drive and azimuth controller in one bank calculate
+        final int n = modules.length;
+        for (int i = 0; i < n; i++) {
+            double angle = modules[i].getModuleAngle().getRadians();
+            double target = moduleAngles[i];
+            double velocity = moduleSpeeds[i];
+            // never turn a module more than a quarter turn, drive it backwards instead
+            if (Math.abs(LightningMath.deltaThetaInRadians(angle, target)) > Math.PI / 2) {
+                target = LightningMath.boundThetaNegPiToPi(target + Math.PI);
+                velocity = -velocity;
+            }
+            measurements[i] = modules[i].getVelocity();
+            setpoints[i] = velocity;
+            measurements[n + i] = angle;
+            setpoints[n + i] = target;
+        }
+        controllers.calculate(measurements, setpoints, outputs);
+
+        final double azimuthFeedforward = gains.getAzimuthFeedforward();
+        for (int i = 0; i < n; i++) {
+            modules[i].setRawDrivePower(closedLoopDrive[i] ? outputs[i] : setpoints[i] / gains.getMaxRealSpeed());
+            modules[i].setRawAzimuthPower(outputs[n + i] + azimuthFeedforward * moduleAngularVelocities[i]);
+        }
+    }
+
+    /**
+     * Correct each commanded speed for being held over a whole loop, so the
+     * robot does not drift sideways when it drives and turns at once
+     * @param periodSeconds the time each speed is held for, usually the
+     *                      robot's loop period, or 0 to turn the correction off
+     */
+    public void setDiscretization(double periodSeconds) {
+        this.discretizePeriod = periodSeconds;
+    }
+
+    /**
+     * Feed forward how fast each module has to steer, from how the commanded
+     * speed is changing, scaled by {@link SwerveGains#getAzimuthFeedforward()}
+     * @param secondOrder whether to feed forward the steering velocity
+     */
+    public void setSecondOrder(boolean secondOrder) {
+        this.secondOrder = secondOrder;
+        this.lastCommandTime = -1;
+        Arrays.fill(moduleAngularVelocities, 0);
+    }
+
+    /**
+     * The controllers driving the modules, copied from each module's
+     * controllers when the drivetrain was created. The drive controller of
+     * module i is channel i, its azimuth controller channel i + the number
+     * of modules.
+     * @return the controller bank
+     */
+    protected PIDFBank getControllers() {
+        return controllers;
     }
 
     @Override
-    public Pose2d getPose(){
-        return null; // TODO: impletment 
+    public void periodic() {
+        profile.start();
+        updateOdometry(Timer.getFPGATimestamp());
+        profile.stop();
     }
 
+    private void updateOdometry(double now) {
+        for (int i = 0; i < modules.length; ++i) {
+            measuredSpeeds[i] = modules[i].getVelocity();
+            measuredAngles[i] = modules[i].getModuleAngle().getRadians();
+        }
+        var kinematics = gains.getKinematics();
+        kinematics.forward(measuredSpeeds, measuredAngles, measuredSpeed);
+        // the pose is in WPILib's convention, like the trajectories
+        kinematics.toChassisSpeed(measuredSpeed, chassisSpeed);
+
+        double dt = lastUpdate < 0 ? 0 : now - lastUpdate;
+        lastUpdate = now;
+
+        double dTheta;
+        if (imu != null) {
+            double newHeading = imu.getHeading().getRadians() + headingOffset;
+            dTheta = LightningMath.deltaThetaInRadians(odometry.getHeading(), newHeading);
+        } else {
+            dTheta = chassisSpeed[2] * dt;
+        }
+
+        odometry.update(chassisSpeed[0] * dt, chassisSpeed[1] * dt, dTheta);
+        pose = odometry.getPose();
+    }
+
+    /**
+     * The pose from odometry, updated once a loop
+     * @return the robot's pose on the field
+     */
     @Override
-    public void setPose(Pose2d newPose) {}
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    @Override
+    public void setPose(Pose2d newPose) {
+        odometry.reset(newPose);
+        if (imu != null) {
+            headingOffset = odometry.getHeading() - imu.getHeading().getRadians();
+        }
+        pose = newPose;
+    }
 
     @Override
     public DrivetrainState getDriveState() {
@@ -8,6 +8,8 @@ public class SwerveGains extends LightningGains {
     private SwerveKinematics kinematics;
     private double maxRealSpeed;
     private double maxAngularSpeed;
+    private double maxAngularAcceleration;
+    private double azimuthFeedforward;
     private boolean[] turnMotorInverts;
     private boolean[] driveMotorInverts;
     private double width;
@@ -27,6 +29,21 @@ public class SwerveGains extends LightningGains {
         this.setKinematics(kinematics);
     }
 
+    @Override
+    public SwerveKinematics getKinematics() {
+        return kinematics;
+    }
+
+    /**
+     * Use kinematics other than the four module default, for a chassis with
+     * a different number of modules or layout
+     * @param kinematics the kinematics, with a module for each of the drivetrain's
+     */
+    public void setKinematics(SwerveKinematics kinematics) {
+        this.kinematics = kinematics;
+        super.setKinematics(kinematics);
+    }
+
     public double getWidth() {
         return width;
     }
@@ -51,6 +68,34 @@ public class SwerveGains extends LightningGains {
         return maxAngularSpeed;
     }
 
+    public void setMaxAngularAcceleration(double maxAngularAcceleration) {
+        this.maxAngularAcceleration = maxAngularAcceleration;
+    }
+
+    /**
+     * @return the max angular acceleration if it was set, otherwise the
+     *         angular acceleration that gives the modules the max acceleration
+     */
+    public double getMaxAngularAcceleration() {
+        if (maxAngularAcceleration > 0) {
+            return maxAngularAcceleration;
+        }
+        return getMaxAcceleration() / (Math.hypot(width, length) / 2d);
+    }
+
+    /**
+     * Set the azimuth output per radian per second of steering, added to the
+     * azimuth controllers' output when the drivetrain is in second order mode
+     * @param azimuthFeedforward azimuth output per radian per second
+     */
+    public void setAzimuthFeedforward(double azimuthFeedforward) {
+        this.azimuthFeedforward = azimuthFeedforward;
+    }
+
+    public double getAzimuthFeedforward() {
+        return azimuthFeedforward;
+    }
+
     public boolean[] getTurnMotorInverts() {
         return turnMotorInverts;
     }
@@ -58,6 +58,28 @@ public class SwerveModule {
         return azimuthMotor;
     }
 
+    /**
+     * @return the drive velocity controller, or null if the drive is open loop
+     */
+    public PIDFController getDriveController() {
+        return driveController;
+    }
+
+    public PIDFController getAzimuthController() {
+        return angleController;
+    }
+
+    /**
+     * Name the module's controllers for {@link com.lightningrobotics.common.logging.ControllerTelemetry}
+     * @param name the module name
+     */
+    public void setName(String name) {
+        if (driveController != null) {
+            driveController.setName(name + " drive");
+        }
+        angleController.setName(name + " azimuth");
+    }
+
     public void setState(SwerveModuleState target) {
 
         // Optimize the module state
@@ -0,0 +1,314 @@
+package com.lightningrobotics.common.util;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import com.lightningrobotics.common.logging.CrashTrackingRunnable;
+import com.lightningrobotics.common.logging.DataLogger;
+import com.lightningrobotics.common.logging.LoopProfiler;
+import com.lightningrobotics.common.logging.SampleRate;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Cooperative scheduler for low priority periodic work. Each task has a
+ * period and an estimated cost, and is only started on the robot thread
+ * when that cost fits in what is left of the current frame. Tasks that do
+ * not fit are deferred to a later frame, earliest deadline first.
+ *
+ * The cost estimate follows each task's measured run time. Tasks
+ * registered as thread safe move to a worker thread once they take longer
+ * than {@link #setOffloadCost the offload cost}, the rest always run on
+ * the robot thread.
+ *
+ * A task misses its deadline when it starts more than one period after it
+ * was due. Misses and deferrals are counted per task and logged.
+ */
+public class TaskScheduler {
+
+    private static final double costSmoothing = 0.2;
+    private static final int workDepth = 64;
+
+    private final ArrayList<Task> tasks = new ArrayList<>();
+    private final double framePeriod;
+    private double reserve = 0.002;
+    private double offloadCost = 0.005;
+    private long frame = 0;
+
+    private ArrayBlockingQueue<Task> workQueue;
+    private Thread worker;
+
+    /**
+     * A registered task and its statistics
+     */
+    public static class Task {
+        private final String name;
+        private final double period;
+        private final boolean threadSafe;
+        private final Runnable action;
+        private final LoopProfiler.Phase profile;
+        private volatile double cost;
+        private volatile boolean offloaded = false;
+        private volatile boolean running = false;
+        private double due;
+        private long deferredFrame = -1;
+        private long runs = 0;
+        private long misses = 0;
+        private long deferrals = 0;
+
+        private Task(String name, double period, double cost, boolean threadSafe, Runnable action) {
+            this.name = name;
+            this.period = period;
+            this.cost = cost;
+            this.threadSafe = threadSafe;
+            this.action = action;
+            this.profile = LoopProfiler.phase(name);
+        }
+
+        private void measured(double seconds) {
+            cost += costSmoothing * (seconds - cost);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getPeriod() {
+            return period;
+        }
+
+        /**
+         * @return the current cost estimate in seconds
+         */
+        public double getCost() {
+            return cost;
+        }
+
+        public boolean isOffloaded() {
+            return offloaded;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * @return number of times the task started more than a period late
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return number of frames the task was due but did not fit
+         */
+        public long getDeferrals() {
+            return deferrals;
+        }
+    }
+
+    /**
+     * @param framePeriod length of a robot frame in seconds
+     */
+    public TaskScheduler(double framePeriod) {
+        this.framePeriod = framePeriod;
+    }
+
+    /**
+     * Register a task that always runs on the robot thread
+     * @param name task name used on the dashboard and in the log
+     * @param period seconds between runs
+     * @param cost estimated run time in seconds
+     * @param action the work to do
+     * @return the registered task
+     */
+    public Task schedule(String name, double period, double cost, Runnable action) {
+        return schedule(name, period, cost, false, action);
+    }
+
+    /**
+     * Register a task. Its misses and deferrals are logged if the
+     * {@link DataLogger} is still accepting fields.
+     * @param name task name used on the dashboard and in the log
+     * @param period seconds between runs
+     * @param cost estimated run time in seconds
+     * @param threadSafe true if the task may be moved to the worker thread
+     * @param action the work to do
+     * @return the registered task
+     */
+    public Task schedule(String name, double period, double cost, boolean threadSafe, Runnable action) {
+        if (!(period > 0)) {
+            throw new IllegalArgumentException("Task period must be positive: " + name);
+        }
+
+        Task task = new Task(name, period, cost, threadSafe, action);
+        task.due = Timer.getFPGATimestamp() + period;
+        if (threadSafe && cost > offloadCost) {
+            task.offloaded = true;
+        }
+        tasks.add(task);
+
+        if (DataLogger.acceptsNewDataElements()) {
+            DataLogger.addLongDataElement(name + " misses", () -> task.misses, SampleRate.onChange(0));
+            DataLogger.addLongDataElement(name + " deferrals", () -> task.deferrals, SampleRate.onChange(0));
+        }
+        return task;
+    }
+
+    /**
+     * Time to leave free at the end of every frame
+     * @param seconds the reserve, 2ms by default
+     */
+    public void setReserve(double seconds) {
+        reserve = seconds;
+    }
+
+    /**
+     * Thread safe tasks that take longer than this move to the worker thread
+     * @param seconds the offload cost, 5ms by default
+     */
+    public void setOffloadCost(double seconds) {
+        offloadCost = seconds;
+    }
+
+    public ArrayList<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Start whatever is due and fits in the rest of the frame. Call once per
+     * frame from the robot thread, as late in the frame as possible.
+     * @param frameStart FPGA time the current frame started
+     */
+    public void run(double frameStart) {
+        frame++;
+        double now = Timer.getFPGATimestamp();
+        double deadline = frameStart + framePeriod - reserve;
+        boolean ranInline = false;
+
+        // offloaded work costs the robot thread nothing, so hand it all off first
+        for (int i = 0; i < tasks.size(); ++i) {
+            Task task = tasks.get(i);
+            if (task.offloaded && now >= task.due) {
+                if (task.running) {
+                    deferred(task);
+                } else {
+                    dispatch(task, now);
+                }
+            }
+        }
+
+        while (true) {
+            Task next = null;
+            for (int i = 0; i < tasks.size(); ++i) {
+                Task task = tasks.get(i);
+                if (!task.offloaded && now >= task.due && task.deferredFrame != frame
+                    && (next == null || task.due < next.due)) {
+                    next = task;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+
+            // a task that never fits still gets a frame to itself once it is late
+            boolean late = now >= next.due + next.period;
+            if (now + next.cost <= deadline || (late && !ranInline)) {
+                runInline(next, now);
+                ranInline = true;
+                now = Timer.getFPGATimestamp();
+            } else {
+                deferred(next);
+            }
+        }
+    }
+
+    private void deferred(Task task) {
+        if (task.deferredFrame != frame) {
+            task.deferredFrame = frame;
+            task.deferrals++;
+        }
+    }
+
+    private void started(Task task, double now) {
+        if (now > task.due + task.period) {
+            task.misses++;
+        }
+        task.runs++;
+        task.due += task.period;
+        if (task.due <= now) {
+            task.due = now + task.period;
+        }
+    }
+
+    private void runInline(Task task, double now) {
+        started(task, now);
+
+        task.profile.start();
+        try {
+            task.action.run();
+        } finally {
+            // a throwing task must not leave its phase running
+            task.profile.stop();
+        }
+
+        task.measured(Timer.getFPGATimestamp() - now);
+        if (task.cost > offloadCost) {
+            if (task.threadSafe) {
+                task.offloaded = true;
+            } else if (task.runs == 1 || task.runs % 100 == 0) {
+                System.err.printf("Task %s takes %.1fms on the robot thread%n", task.name, task.cost * 1000);
+            }
+        }
+    }
+
+    private void dispatch(Task task, double now) {
+        if (worker == null) {
+            startWorker();
+        }
+
+        started(task, now);
+        task.running = true;
+        if (!workQueue.offer(task)) {
+            task.running = false;
+            deferred(task);
+        }
+    }
+
+    private void startWorker() {
+        workQueue = new ArrayBlockingQueue<>(workDepth);
+        worker = new Thread(new CrashTrackingRunnable() {
+            @Override
+            public void runCrashTracked() {
+                workLoop();
+            }
+        }, "TaskScheduler");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Task task;
+            try {
+                task = workQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            double start = Timer.getFPGATimestamp();
+            try {
+                task.action.run();
+            } catch (Exception e) {
+                System.err.println("Task " + task.name + " failed");
+                e.printStackTrace();
+            } finally {
+                // otherwise the task is never dispatched again
+                task.measured(Timer.getFPGATimestamp() - start);
+                task.running = false;
+            }
+        }
+    }
+
+}
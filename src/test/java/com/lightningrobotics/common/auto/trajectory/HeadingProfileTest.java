@@ -0,0 +1,38 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HeadingProfileTest {
+
+    @Test
+    public void lateTurnMakesTheNextOneAsFastAsItCan() {
+        // the first turn takes about 2.45s, so the second is already late
+        // by 1.4s when it starts
+        var profile = new HeadingProfile(new double[] { 0, 1, 1.05 }, new double[] { 0, 3, 2.9 }, 3, 2);
+        var sampler = profile.sampler();
+        var state = new HeadingProfile.State();
+
+        double firstEnd = 2 * Math.sqrt(3 / 2.0);
+        double fastest = 2 * Math.sqrt(0.1 / 2);
+        assertEquals(firstEnd + fastest, profile.getTotalTimeSeconds(), 1E-9);
+
+        double last = Double.NEGATIVE_INFINITY;
+        for (double t = 0; t <= profile.getTotalTimeSeconds() + 0.1; t += 0.01) {
+            sampler.sample(t, state);
+            if (t < firstEnd) {
+                assertTrue("heading went back at " + t, state.headingRadians >= last - 1E-9);
+                assertTrue(state.angularVelocityRadPerSec >= 0);
+            } else {
+                assertTrue("heading left the second turn at " + t,
+                        state.headingRadians <= 3 + 1E-9 && state.headingRadians >= 2.9 - 1E-9);
+                assertTrue(state.angularVelocityRadPerSec <= 0);
+            }
+            last = state.headingRadians;
+        }
+        assertEquals(2.9, last, 1E-9);
+    }
+
+}
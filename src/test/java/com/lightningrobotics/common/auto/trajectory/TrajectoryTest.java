@@ -0,0 +1,54 @@
+package com.lightningrobotics.common.auto.trajectory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+public class TrajectoryTest {
+
+    private static final double EPSILON = 1E-3;
+
+    private static Pose2d pose(double x, double y, double degrees) {
+        return new Pose2d(x, y, Rotation2d.fromDegrees(degrees));
+    }
+
+    private static void assertContinuous(Trajectory original, Trajectory replanned, double timeSeconds) {
+        var before = original.sample(timeSeconds);
+        var after = replanned.sample(timeSeconds + 1E-4);
+        assertEquals(before.velocityMetersPerSecond, after.velocityMetersPerSecond, EPSILON);
+        assertEquals(before.curvatureRadPerMeter, after.curvatureRadPerMeter, 0.01);
+        assertEquals(before.poseMeters.getX(), after.poseMeters.getX(), EPSILON);
+        assertEquals(before.poseMeters.getY(), after.poseMeters.getY(), EPSILON);
+        assertEquals(before.poseMeters.getRotation().getRadians(), after.poseMeters.getRotation().getRadians(),
+                EPSILON);
+    }
+
+    @Test
+    public void replanKeepsTheCurvatureAtTheSplice() {
+        var config = new TrajectoryConfig(3.0, 2.0);
+        var trajectory = Trajectory.from(List.of(pose(0, 0, 0), pose(2, 1, 60), pose(3, 3, 90)), config);
+        double split = trajectory.getTotalTimeSeconds() / 3;
+        assertTrue(Math.abs(trajectory.sample(split).curvatureRadPerMeter) > 0.1);
+
+        var replanned = trajectory.replan(split, List.of(pose(4, 2, 0)), config);
+        assertContinuous(trajectory, replanned, split);
+    }
+
+    @Test
+    public void replanKeepsTheCurvatureAtTheSpliceReversed() {
+        var config = new TrajectoryConfig(3.0, 2.0).setReversed(true);
+        var trajectory = Trajectory.from(List.of(pose(3, 3, 90), pose(2, 1, 60), pose(0, 0, 0)), config);
+        double split = trajectory.getTotalTimeSeconds() * 0.3;
+        assertTrue(Math.abs(trajectory.sample(split).curvatureRadPerMeter) > 0.1);
+
+        var replanned = trajectory.replan(split, List.of(pose(-1, 1, -60)), config);
+        assertContinuous(trajectory, replanned, split);
+    }
+
+}
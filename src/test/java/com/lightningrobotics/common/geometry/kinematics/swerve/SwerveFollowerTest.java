@@ -0,0 +1,133 @@
+package com.lightningrobotics.common.geometry.kinematics.swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.lightningrobotics.common.auto.trajectory.HeadingProfile;
+import com.lightningrobotics.common.auto.trajectory.PackedTrajectory;
+import com.lightningrobotics.common.controller.HolonomicDriveController;
+import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveGains;
+
+/**
+ * Drives a {@link HolonomicDriveController} through the four module
+ * kinematics, and moves a simulated robot by where its modules really are,
+ * front left at +y in WPILib's convention, with module angles measured
+ * clockwise like the kinematics does.
+ */
+public class SwerveFollowerTest {
+
+    private static final double WIDTH = 0.6;
+    private static final double LENGTH = 0.5;
+    private static final double DT = 0.02;
+
+    private final SwerveKinematics kinematics = new SwerveKinematics(
+            new SwerveGains(WIDTH, LENGTH, 100, 100, 10, 10, new boolean[4], new boolean[4]));
+
+    // front left, front right, rear left and rear right, +y to the left
+    private static final double[][] POSITIONS = {
+        { LENGTH / 2, WIDTH / 2 }, { LENGTH / 2, -WIDTH / 2 }, { -LENGTH / 2, WIDTH / 2 }, { -LENGTH / 2, -WIDTH / 2 }
+    };
+
+    private final double[] command = new double[3];
+    private final double[] speeds = new double[4];
+    private final double[] angles = new double[4];
+    private final double[] measured = new double[3];
+
+    // the simulated robot
+    private final SwerveOdometry robot = new SwerveOdometry();
+    // what the drivetrain's odometry makes of its modules
+    private final SwerveOdometry odometry = new SwerveOdometry();
+
+    private void step(double vx, double vy, double omegaRadiansPerSecond) {
+        kinematics.fromChassisSpeed(vx, vy, omegaRadiansPerSecond, command);
+        kinematics.inverse(command[0], command[1], command[2], speeds, angles);
+
+        // how the modules move the chassis, as a rigid body
+        double sumX = 0;
+        double sumY = 0;
+        double moment = 0;
+        double inertia = 0;
+        for (int i = 0; i < 4; ++i) {
+            double ux = speeds[i] * Math.cos(angles[i]);
+            double uy = -speeds[i] * Math.sin(angles[i]);
+            sumX += ux;
+            sumY += uy;
+            moment += POSITIONS[i][0] * uy - POSITIONS[i][1] * ux;
+            inertia += POSITIONS[i][0] * POSITIONS[i][0] + POSITIONS[i][1] * POSITIONS[i][1];
+        }
+        robot.update(sumX / 4 * DT, sumY / 4 * DT, moment / inertia * DT);
+
+        kinematics.forward(speeds, angles, measured);
+        kinematics.toChassisSpeed(measured, measured);
+        odometry.update(measured[0] * DT, measured[1] * DT, measured[2] * DT);
+    }
+
+    private static double error(SwerveOdometry robot, PackedTrajectory.State state, HeadingProfile.State heading) {
+        return Math.hypot(state.xMeters - robot.getX(), state.yMeters - robot.getY())
+                + Math.abs(heading.headingRadians - robot.getHeading());
+    }
+
+    @Test
+    public void followerCorrectsAnOffset() {
+        var controller = new HolonomicDriveController();
+        var state = new PackedTrajectory.State();
+        state.xMeters = 1;
+        state.yMeters = 0.5;
+        var heading = new HeadingProfile.State();
+        heading.headingRadians = 0.5;
+
+        double last = error(robot, state, heading);
+        for (int i = 0; i < 200; ++i) {
+            var speed = controller.calculate(robot.getPose(), state, heading);
+            step(speed.vx, speed.vy, speed.omega);
+            double error = error(robot, state, heading);
+            assertTrue("error grew at step " + i + ": " + last + " -> " + error, error < last + 1E-12);
+            last = error;
+        }
+        assertEquals(0, last, 0.05);
+    }
+
+    @Test
+    public void feedforwardDrivesLeftWhileTurning() {
+        var controller = new HolonomicDriveController();
+        controller.setEnabled(false);
+        var state = new PackedTrajectory.State();
+        state.velocityMetersPerSecond = 1;
+        state.headingRadians = Math.PI / 2;
+        var heading = new HeadingProfile.State();
+        heading.angularVelocityRadPerSec = 1;
+
+        for (int i = 0; i < 50; ++i) {
+            var speed = controller.calculate(robot.getPose(), state, heading);
+            step(speed.vx, speed.vy, speed.omega);
+        }
+        // one second at 1 m/s to the left, turning counter-clockwise at 1 rad/s
+        assertEquals(0, robot.getX(), 0.01);
+        assertEquals(1, robot.getY(), 0.01);
+        assertEquals(1, robot.getHeading(), 1E-9);
+    }
+
+    @Test
+    public void odometryMatchesTheRobot() {
+        for (int i = 0; i < 100; ++i) {
+            step(1, 0.5, 0.8);
+        }
+        assertEquals(robot.getX(), odometry.getX(), 1E-9);
+        assertEquals(robot.getY(), odometry.getY(), 1E-9);
+        assertEquals(robot.getHeading(), odometry.getHeading(), 1E-9);
+        assertTrue(robot.getY() > 0 && robot.getHeading() > 0);
+    }
+
+    @Test
+    public void chassisSpeedRoundTrips() {
+        var speed = new double[3];
+        kinematics.fromChassisSpeed(1, 2, 3, speed);
+        kinematics.toChassisSpeed(speed, speed);
+        assertEquals(1, speed[0], 1E-12);
+        assertEquals(2, speed[1], 1E-12);
+        assertEquals(3, speed[2], 1E-12);
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.lightningrobotics.common.geometry.kinematics.swerve;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.lightningrobotics.common.subsystem.drivetrain.swerve.SwerveGains;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+public class SwerveKinematicsTest {
+
+    private static final double WIDTH = 0.6;
+    private static final double LENGTH = 0.5;
+    private static final double EPSILON = 1E-9;
+
+    private static SwerveKinematics chassis(int modules) {
+        var positions = new Translation2d[modules];
+        for (int i = 0; i < modules; ++i) {
+            double angle = Math.PI / 4 + 2 * Math.PI * i / modules;
+            positions[i] = new Translation2d(0.35 * Math.cos(angle), 0.35 * Math.sin(angle));
+        }
+        return new SwerveKinematics(100, positions);
+    }
+
+    private static SwerveGains gains() {
+        return new SwerveGains(WIDTH, LENGTH, 100, 100, 10, 10, new boolean[4], new boolean[4]);
+    }
+
+    private static void assertRoundTrip(SwerveKinematics kinematics) {
+        var random = new Random(862);
+        int n = kinematics.getModuleCount();
+        var speeds = new double[n];
+        var angles = new double[n];
+        var speed = new double[3];
+        for (int i = 0; i < 100; ++i) {
+            double vx = random.nextDouble() * 6 - 3;
+            double vy = random.nextDouble() * 6 - 3;
+            double omega = random.nextDouble() * 8 - 4;
+            kinematics.inverse(vx, vy, omega, speeds, angles);
+            kinematics.forward(speeds, angles, speed);
+            assertArrayEquals(new double[] { vx, vy, omega }, speed, EPSILON);
+        }
+    }
+
+    @Test
+    public void forwardUndoesInverseForThreeModules() {
+        assertRoundTrip(chassis(3));
+    }
+
+    @Test
+    public void forwardUndoesInverseForFourModules() {
+        assertRoundTrip(chassis(4));
+    }
+
+    @Test
+    public void forwardUndoesInverseForSixModules() {
+        assertRoundTrip(chassis(6));
+    }
+
+    @Test
+    public void forwardUndoesInverseForGains() {
+        assertRoundTrip(new SwerveKinematics(gains()));
+    }
+
+    @Test
+    public void gainsMatchLegacyInverse() {
+        var kinematics = new SwerveKinematics(gains());
+        var random = new Random(862);
+        var speeds = new double[4];
+        var angles = new double[4];
+        var legacySpeeds = new double[4];
+        var legacyAngles = new double[4];
+        for (int i = 0; i < 100; ++i) {
+            double vx = random.nextDouble() * 6 - 3;
+            double vy = random.nextDouble() * 6 - 3;
+            double omega = random.nextDouble() * 8 - 4;
+            kinematics.inverse(vx, vy, omega, speeds, angles);
+            legacyInverse(vx, vy, omega, legacySpeeds, legacyAngles);
+            assertArrayEquals(legacySpeeds, speeds, EPSILON);
+            assertArrayEquals(legacyAngles, angles, EPSILON);
+        }
+    }
+
+    @Test
+    public void gainsOmegaIsWheelSpeed() {
+        var kinematics = new SwerveKinematics(gains());
+        var speeds = new double[4];
+        var angles = new double[4];
+        kinematics.inverse(0, 0, 1, speeds, angles);
+        double radius = Math.hypot(WIDTH, LENGTH) / 2;
+        for (double speed : speeds) {
+            assertEquals(kinematics.getRadiansPerOmega() * radius, speed, EPSILON);
+        }
+        assertEquals(1, chassis(4).getRadiansPerOmega(), 0);
+    }
+
+    @Test
+    public void discretizeEndsWhereTheStraightMoveWould() {
+        var kinematics = new SwerveKinematics(gains());
+        double dt = 0.02;
+        double omega = 3;
+        var speed = new double[3];
+        kinematics.discretize(2, 1, omega, dt, speed);
+
+        // drive the corrected speed along its arc for a loop
+        double theta = omega * kinematics.getRadiansPerOmega() * dt;
+        double s = Math.sin(theta) / theta;
+        double c = (1 - Math.cos(theta)) / theta;
+        assertEquals(2 * dt, (speed[0] * s - speed[1] * c) * dt, EPSILON);
+        assertEquals(1 * dt, (speed[0] * c + speed[1] * s) * dt, EPSILON);
+        assertEquals(omega, speed[2], 0);
+    }
+
+    // what SwerveKinematics.inverse did before it took module positions
+    private static void legacyInverse(double vx, double vy, double omega, double[] speeds, double[] angles) {
+        final double W = WIDTH;
+        final double L = LENGTH;
+        final double R = Math.sqrt(W * W + L * L);
+
+        var A = vy - omega * (L / R);
+        var B = vy + omega * (L / R);
+        var C = vx - omega * (W / R);
+        var D = vx + omega * (W / R);
+
+        speeds[0] = Math.sqrt(B * B + D * D);
+        speeds[1] = Math.sqrt(B * B + C * C);
+        speeds[2] = Math.sqrt(A * A + D * D);
+        speeds[3] = Math.sqrt(A * A + C * C);
+
+        angles[0] = Math.atan2(B, D);
+        angles[1] = Math.atan2(B, C);
+        angles[2] = Math.atan2(A, D);
+        angles[3] = Math.atan2(A, C);
+    }
+
+}